@@ -37,12 +37,35 @@ public class ConfigActivity extends PreferenceActivity implements
     public static final String COMPLIMENTARY_QUATERNION_COEFF_KEY = "imuocf_quaternion_coeff_preference";
 
     public static final String KALMAN_QUATERNION_ENABLED_KEY = "imuokf_quaternion_enabled_preference";
+    public static final String KALMAN_ENGINE_KEY = "imuokf_engine_preference";
+
+    public static final String NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY = "native_complimentary_quaternion_enabled_preference";
 
     public static final String MEAN_FILTER_SMOOTHING_ENABLED_KEY = "mean_filter_smoothing_enabled_preference";
     public static final String MEAN_FILTER_SMOOTHING_TIME_CONSTANT_KEY = "mean_filter_smoothing_time_constant_preference";
+    public static final String MEAN_FILTER_SMOOTHING_TYPE_KEY = "mean_filter_smoothing_type_preference";
+
+    public static final String LOG_SAMPLE_EXACT_ENABLED_KEY = "log_sample_exact_enabled_preference";
+    public static final String LOG_FORMAT_KEY = "log_format_preference";
+    public static final String LOG_COMPRESSION_KEY = "log_compression_preference";
+    public static final String LOG_DELTA_QUANTUM_KEY = "log_delta_quantum_preference";
+    public static final String LOG_CSV_BATCH_SIZE_KEY = "log_csv_batch_size_preference";
+    public static final String LOG_CSV_BATCH_INTERVAL_KEY = "log_csv_batch_interval_preference";
+    public static final String LOG_CSV_DURABILITY_KEY = "log_csv_durability_preference";
+    public static final String LOG_SEGMENT_SIZE_KEY = "log_segment_size_preference";
+    public static final String LOG_SEGMENT_DURATION_KEY = "log_segment_duration_preference";
+
+    public static final String SENSOR_SAMPLING_PERIOD_KEY = "sensor_sampling_period_preference";
+    public static final String SENSOR_MAX_REPORT_LATENCY_KEY = "sensor_max_report_latency_preference";
+    public static final String SENSOR_LOW_POWER_ENABLED_KEY = "sensor_low_power_enabled_preference";
+    public static final String GYROSCOPE_BIAS_CORRECTION_ENABLED_KEY = "gyroscope_bias_correction_enabled_preference";
+
+    public static final String GAUGE_RENDERING_KEY = "gauge_rendering_preference";
+    public static final String LATENCY_OVERLAY_ENABLED_KEY = "latency_overlay_enabled_preference";
 
     private SwitchPreference spComplimentaryQuaternionEnabled;
     private SwitchPreference spKalmanQuaternionEnabled;
+    private SwitchPreference spNativeComplimentaryQuaternionEnabled;
 
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -56,6 +79,8 @@ public class ConfigActivity extends PreferenceActivity implements
 
         spKalmanQuaternionEnabled = (SwitchPreference) findPreference(KALMAN_QUATERNION_ENABLED_KEY);
 
+        spNativeComplimentaryQuaternionEnabled = (SwitchPreference) findPreference(NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY);
+
     }
 
     @Override
@@ -65,8 +90,10 @@ public class ConfigActivity extends PreferenceActivity implements
             if (sharedPreferences.getBoolean(key, false)) {
                 Editor edit = sharedPreferences.edit();
                 edit.putBoolean(KALMAN_QUATERNION_ENABLED_KEY, false);
+                edit.putBoolean(NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
                 edit.apply();
                 spKalmanQuaternionEnabled.setChecked(false);
+                spNativeComplimentaryQuaternionEnabled.setChecked(false);
             }
         }
 
@@ -74,8 +101,21 @@ public class ConfigActivity extends PreferenceActivity implements
             if (sharedPreferences.getBoolean(key, false)) {
                 Editor edit = sharedPreferences.edit();
                 edit.putBoolean(COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+                edit.putBoolean(NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+                edit.apply();
+                spComplimentaryQuaternionEnabled.setChecked(false);
+                spNativeComplimentaryQuaternionEnabled.setChecked(false);
+            }
+        }
+
+        if (key.equals(NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY)) {
+            if (sharedPreferences.getBoolean(key, false)) {
+                Editor edit = sharedPreferences.edit();
+                edit.putBoolean(COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+                edit.putBoolean(KALMAN_QUATERNION_ENABLED_KEY, false);
                 edit.apply();
                 spComplimentaryQuaternionEnabled.setChecked(false);
+                spKalmanQuaternionEnabled.setChecked(false);
             }
         }
 
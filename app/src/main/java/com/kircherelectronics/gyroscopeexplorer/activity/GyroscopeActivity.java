@@ -2,13 +2,16 @@ package com.kircherelectronics.gyroscopeexplorer.activity;
 
 import android.Manifest;
 import android.app.Dialog;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.preference.PreferenceManager;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -17,19 +20,19 @@ import android.view.Window;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.kircherelectronics.fsensor.filter.averaging.MeanFilter;
-import com.kircherelectronics.fsensor.observer.SensorSubject;
-import com.kircherelectronics.fsensor.sensor.FSensor;
-import com.kircherelectronics.fsensor.sensor.gyroscope.ComplementaryGyroscopeSensor;
-import com.kircherelectronics.fsensor.sensor.gyroscope.GyroscopeSensor;
-import com.kircherelectronics.fsensor.sensor.gyroscope.KalmanGyroscopeSensor;
 import com.kircherelectronics.gyroscopeexplorer.R;
-import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerManager;
 import com.kircherelectronics.gyroscopeexplorer.gauge.GaugeBearing;
+import com.kircherelectronics.gyroscopeexplorer.gauge.GaugeBearingSurface;
 import com.kircherelectronics.gyroscopeexplorer.gauge.GaugeRotation;
+import com.kircherelectronics.gyroscopeexplorer.gauge.GaugeRotationSurface;
+import com.kircherelectronics.gyroscopeexplorer.service.SensorService;
+import com.kircherelectronics.gyroscopeexplorer.util.FixedPointFormat;
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyMonitor;
+import com.kircherelectronics.gyroscopeexplorer.view.FrameScheduler;
 import com.kircherelectronics.gyroscopeexplorer.view.VectorDrawableButton;
 
-import java.util.Locale;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
@@ -62,61 +65,102 @@ import androidx.core.content.ContextCompat;
 public class GyroscopeActivity extends AppCompatActivity {
     private final static int WRITE_EXTERNAL_STORAGE_REQUEST = 1000;
 
-    // Indicate if the output should be logged to a .csv file
-    private boolean logData = false;
-
-    private boolean meanFilterEnabled;
-
-    private float[] fusedOrientation = new float[3];
-
     // The gauge views. Note that these are views and UI hogs since they run in
     // the UI thread, not ideal, but easy to use.
     private GaugeBearing gaugeBearingCalibrated;
     private GaugeRotation gaugeTiltCalibrated;
 
-    // Handler for the UI plots so everything plots smoothly
-    protected Handler uiHandler;
-    protected Runnable uiRunnable;
+    // The same gauges drawn on their own render thread instead, created the
+    // first time they are selected
+    private GaugeBearingSurface gaugeBearingSurface;
+    private GaugeRotationSurface gaugeTiltSurface;
+
+    private boolean renderThreadGauges = false;
+
+    // Updates the UI on vsync when the orientation changes so everything
+    // plots smoothly
+    private FrameScheduler frameScheduler;
 
     private TextView tvXAxis;
     private TextView tvYAxis;
     private TextView tvZAxis;
 
-    private FSensor fSensor;
+    // The text of each axis is formatted into these instead of new Strings,
+    // and only when the displayed tenth of a degree changes
+    private final char[][] axisText = new char[3][FixedPointFormat.maxLength(1)];
+    private final long[] axisTenths = new long[3];
+    private char decimalSeparator;
 
-    private MeanFilter meanFilter;
+    // The sensor and the data logger live in the service so a log keeps
+    // running in the background, the activity only displays the orientation
+    private SensorService sensorService;
+    private boolean resumed = false;
 
-    private DataLoggerManager dataLogger;
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            onSensorServiceConnected(((SensorService.LocalBinder) binder).getService());
+        }
 
-    private Dialog helpDialog;
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            sensorService = null;
+        }
+    };
 
-    private SensorSubject.SensorObserver sensorObserver = new SensorSubject.SensorObserver() {
+    private final FrameScheduler.FrameListener frameListener = new FrameScheduler.FrameListener() {
         @Override
-        public void onSensorChanged(float[] values) {
-          updateValues(values);
+        public void onFrame(float[] orientation) {
+            updateText(orientation);
+
+            // The render thread gauges read the orientation themselves
+            if (!renderThreadGauges) {
+                updateGauges(orientation);
+            }
         }
     };
 
+    // Shows the latencies measured by the service over the gauges
+    private static final long LATENCY_OVERLAY_INTERVAL = 500;
+
+    private TextView tvLatency;
+    private final StringBuilder latencyText = new StringBuilder();
+    private final Handler handler = new Handler();
+
+    private final Runnable latencyOverlayUpdate = new Runnable() {
+        @Override
+        public void run() {
+            updateLatencyOverlay();
+            handler.postDelayed(this, LATENCY_OVERLAY_INTERVAL);
+        }
+    };
+
+    private Dialog helpDialog;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_gyroscope);
-        dataLogger = new DataLoggerManager(this);
-        meanFilter = new MeanFilter();
-
-        uiHandler = new Handler();
-        uiRunnable = new Runnable() {
-            @Override
-            public void run() {
-                uiHandler.postDelayed(this, 100);
-                updateText();
-                updateGauges();
-            }
-        };
 
         initUI();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        bindService(new Intent(this, SensorService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    protected void onStop() {
+        // The service stays running without the activity while it is logging
+        unbindService(serviceConnection);
+        sensorService = null;
+
+        super.onStop();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -132,7 +176,9 @@ public class GyroscopeActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_reset:
-                fSensor.reset();
+                if (sensorService != null) {
+                    sensorService.reset();
+                }
                 break;
             case R.id.action_config:
                 Intent intent = new Intent();
@@ -153,24 +199,19 @@ public class GyroscopeActivity extends AppCompatActivity {
     public void onResume() {
         super.onResume();
 
-        Mode mode = readPrefs();
+        resumed = true;
+        setRenderThreadGauges(getPrefGaugeRendering().equals("surface"));
 
-        switch (mode) {
-            case GYROSCOPE_ONLY:
-                fSensor = new GyroscopeSensor(this);
-                break;
-            case COMPLIMENTARY_FILTER:
-                fSensor = new ComplementaryGyroscopeSensor(this);
-                ((ComplementaryGyroscopeSensor)fSensor).setFSensorComplimentaryTimeConstant(getPrefImuOCfQuaternionCoeff());
-                break;
-            case KALMAN_FILTER:
-                fSensor = new KalmanGyroscopeSensor(this);
-                break;
+        boolean latencyOverlay = getPrefLatencyOverlayEnabled();
+        tvLatency.setVisibility(latencyOverlay ? View.VISIBLE : View.GONE);
+
+        if (latencyOverlay) {
+            handler.post(latencyOverlayUpdate);
         }
 
-        fSensor.register(sensorObserver);
-        fSensor.start();
-        uiHandler.post(uiRunnable);
+        if (sensorService != null) {
+            startDisplay();
+        }
     }
 
     @Override
@@ -179,9 +220,12 @@ public class GyroscopeActivity extends AppCompatActivity {
             helpDialog.dismiss();
         }
 
-        fSensor.unregister(sensorObserver);
-        fSensor.stop();
-        uiHandler.removeCallbacksAndMessages(null);
+        resumed = false;
+        handler.removeCallbacks(latencyOverlayUpdate);
+
+        if (sensorService != null) {
+            stopDisplay();
+        }
 
         super.onPause();
     }
@@ -198,29 +242,51 @@ public class GyroscopeActivity extends AppCompatActivity {
         }
     }
 
-    private boolean getPrefMeanFilterEnabled() {
+    private String getPrefGaugeRendering() {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-        return prefs.getBoolean(ConfigActivity.MEAN_FILTER_SMOOTHING_ENABLED_KEY, false);
+        return prefs.getString(ConfigActivity.GAUGE_RENDERING_KEY, "view");
     }
 
-    private float getPrefMeanFilterTimeConstant() {
+    private boolean getPrefLatencyOverlayEnabled() {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-        return Float.parseFloat(prefs.getString(ConfigActivity.MEAN_FILTER_SMOOTHING_TIME_CONSTANT_KEY, "0.5"));
+        return prefs.getBoolean(ConfigActivity.LATENCY_OVERLAY_ENABLED_KEY, false);
     }
 
-    private boolean getPrefKalmanEnabled() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-        return prefs.getBoolean(ConfigActivity.KALMAN_QUATERNION_ENABLED_KEY, false);
+    private void onSensorServiceConnected(SensorService service) {
+        sensorService = service;
+
+        frameScheduler = new FrameScheduler(service.getOrientation(), frameListener);
+        frameScheduler.setLatencyMonitor(service.getLatencyMonitor());
+
+        if (gaugeBearingSurface != null) {
+            gaugeBearingSurface.setOrientation(service.getOrientation());
+            gaugeTiltSurface.setOrientation(service.getOrientation());
+        }
+
+        // The service may have been logging since before the activity was
+        // created
+        if (service.isLogging()) {
+            VectorDrawableButton button = findViewById(R.id.button_start);
+            button.setText(getString(R.string.action_stop));
+        }
+
+        if (resumed) {
+            startDisplay();
+        }
     }
 
-    private boolean getPrefComplimentaryEnabled() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-        return prefs.getBoolean(ConfigActivity.COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+    /**
+     * Start the sensor with the latest preferences and display the
+     * orientation.
+     */
+    private void startDisplay() {
+        sensorService.setDisplayActive(true);
+        frameScheduler.start();
     }
 
-    private float getPrefImuOCfQuaternionCoeff() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-        return Float.parseFloat(prefs.getString(ConfigActivity.COMPLIMENTARY_QUATERNION_COEFF_KEY, "0.5"));
+    private void stopDisplay() {
+        frameScheduler.stop();
+        sensorService.setDisplayActive(false);
     }
 
     private void initStartButton() {
@@ -228,7 +294,11 @@ public class GyroscopeActivity extends AppCompatActivity {
 
         button.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                if (!logData) {
+                if (sensorService == null) {
+                    return;
+                }
+
+                if (!sensorService.isLogging()) {
                     button.setText(getString(R.string.action_stop));
                     startDataLog();
                 } else {
@@ -254,36 +324,19 @@ public class GyroscopeActivity extends AppCompatActivity {
         tvYAxis = this.findViewById(R.id.value_y_axis_calibrated);
         tvZAxis = this.findViewById(R.id.value_z_axis_calibrated);
 
+        decimalSeparator = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+        Arrays.fill(axisTenths, Long.MIN_VALUE);
+
         // Initialize the calibrated gauges views
         gaugeBearingCalibrated = findViewById(R.id.gauge_bearing_calibrated);
         gaugeTiltCalibrated = findViewById(R.id.gauge_tilt_calibrated);
 
+        tvLatency = findViewById(R.id.latency_overlay);
+
         initStartButton();
     }
 
 
-    private Mode readPrefs() {
-        meanFilterEnabled = getPrefMeanFilterEnabled();
-        boolean complimentaryFilterEnabled = getPrefComplimentaryEnabled();
-        boolean kalmanFilterEnabled = getPrefKalmanEnabled();
-
-        if(meanFilterEnabled) {
-            meanFilter.setTimeConstant(getPrefMeanFilterTimeConstant());
-        }
-
-        Mode mode;
-
-        if(!complimentaryFilterEnabled && !kalmanFilterEnabled) {
-            mode = Mode.GYROSCOPE_ONLY;
-        } else if(complimentaryFilterEnabled) {
-            mode = Mode.COMPLIMENTARY_FILTER;
-        } else {
-            mode = Mode.KALMAN_FILTER;
-        }
-
-        return mode;
-    }
-
     private void showHelpDialog() {
         helpDialog = new Dialog(this);
         helpDialog.setCancelable(true);
@@ -295,27 +348,93 @@ public class GyroscopeActivity extends AppCompatActivity {
     }
 
     private void startDataLog() {
-        if(!logData && requestPermissions()) {
-            logData = true;
-            dataLogger.startDataLog();
+        if(sensorService != null && !sensorService.isLogging() && requestPermissions()) {
+            sensorService.startDataLog();
         }
     }
 
     private void stopDataLog() {
-        if(logData) {
-            logData = false;
-            String path = dataLogger.stopDataLog();
+        if(sensorService != null && sensorService.isLogging()) {
+            String path = sensorService.stopDataLog();
             Toast.makeText(this, "File Written to: " + path, Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void updateText() {
-        tvXAxis.setText(String.format(Locale.getDefault(),"%.1f", (Math.toDegrees(fusedOrientation[1]) + 360) % 360));
-        tvYAxis.setText(String.format(Locale.getDefault(),"%.1f", (Math.toDegrees(fusedOrientation[2]) + 360) % 360));
-        tvZAxis.setText(String.format(Locale.getDefault(),"%.1f", (Math.toDegrees(fusedOrientation[0]) + 360) % 360));
+    private void updateText(float[] fusedOrientation) {
+        updateAxisText(tvXAxis, 0, fusedOrientation[1]);
+        updateAxisText(tvYAxis, 1, fusedOrientation[2]);
+        updateAxisText(tvZAxis, 2, fusedOrientation[0]);
+    }
+
+    private void updateAxisText(TextView view, int axis, float radians) {
+        long tenths = Math.round((Math.toDegrees(radians) + 360) % 360 * 10);
+
+        if (tenths == axisTenths[axis]) {
+            return;
+        }
+
+        axisTenths[axis] = tenths;
+
+        char[] text = axisText[axis];
+        int length = FixedPointFormat.format(tenths / 10.0, 1, text, 0);
+        // The decimal point is always the second last character
+        text[length - 2] = decimalSeparator;
+
+        view.setText(text, 0, length);
+    }
+
+    /**
+     * Swap the gauges between the views drawn on the UI thread and the
+     * surfaces drawn on their own render thread.
+     */
+    private void setRenderThreadGauges(boolean enabled) {
+        if (enabled == renderThreadGauges) {
+            return;
+        }
+
+        if (enabled) {
+            if (gaugeBearingSurface == null) {
+                gaugeBearingSurface = new GaugeBearingSurface(this);
+                gaugeTiltSurface = new GaugeRotationSurface(this);
+
+                if (sensorService != null) {
+                    gaugeBearingSurface.setOrientation(sensorService.getOrientation());
+                    gaugeTiltSurface.setOrientation(sensorService.getOrientation());
+                }
+            }
+
+            replaceView(gaugeBearingCalibrated, gaugeBearingSurface);
+            replaceView(gaugeTiltCalibrated, gaugeTiltSurface);
+        } else {
+            replaceView(gaugeBearingSurface, gaugeBearingCalibrated);
+            replaceView(gaugeTiltSurface, gaugeTiltCalibrated);
+        }
+
+        renderThreadGauges = enabled;
+    }
+
+    private void replaceView(View current, View replacement) {
+        ViewGroup parent = (ViewGroup) current.getParent();
+        int index = parent.indexOfChild(current);
+
+        replacement.setId(current.getId());
+        parent.removeViewAt(index);
+        parent.addView(replacement, index, current.getLayoutParams());
+    }
+
+    private void updateLatencyOverlay() {
+        if (sensorService == null) {
+            return;
+        }
+
+        LatencyMonitor latencyMonitor = sensorService.getLatencyMonitor();
+
+        latencyText.setLength(0);
+        latencyMonitor.format(latencyText);
+        tvLatency.setText(latencyText);
     }
 
-    private void updateGauges() {
+    private void updateGauges(float[] fusedOrientation) {
         gaugeBearingCalibrated.updateBearing(fusedOrientation[0]);
         gaugeTiltCalibrated.updateRotation(fusedOrientation[1], fusedOrientation[2]);
     }
@@ -329,21 +448,5 @@ public class GyroscopeActivity extends AppCompatActivity {
         return true;
     }
 
-    private void updateValues(float[] values) {
-        fusedOrientation = values;
-        if(meanFilterEnabled) {
-            fusedOrientation = meanFilter.filter(fusedOrientation);
-        }
-
-        if(logData) {
-            dataLogger.setRotation(fusedOrientation);
-        }
-    }
-
-    private enum Mode {
-        GYROSCOPE_ONLY,
-        COMPLIMENTARY_FILTER,
-        KALMAN_FILTER
-    }
 
 }
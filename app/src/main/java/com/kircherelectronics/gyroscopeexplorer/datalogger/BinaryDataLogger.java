@@ -0,0 +1,164 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Writes fixed-width little-endian records in the {@link BinaryLogFormat}
+ * through a direct buffer and a file channel. The files are a fraction of the
+ * size of the CSV logs and can be converted back with
+ * {@link BinaryLogConverter}.
+ */
+public class BinaryDataLogger implements DataLoggerInterface
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileOutputStream outputStream;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    // The bytes written to the channel so far
+    private long size;
+    private boolean headersSet;
+    private File file;
+    private Context context;
+
+    private String mode;
+    private int samplingPeriodUs;
+
+    private float[] values = new float[3];
+
+    public BinaryDataLogger(Context context, File file, String mode, int samplingPeriodUs)
+    {
+        this.context = context;
+        this.file = file;
+        this.mode = mode;
+        this.samplingPeriodUs = samplingPeriodUs;
+
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try
+        {
+            outputStream = new FileOutputStream(file);
+            channel = outputStream.getChannel();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        headersSet = false;
+    }
+
+    /**
+     * The column names are fixed by the format, so this writes the binary
+     * header with the sensor mode and rate instead.
+     */
+    public void setHeaders(Iterable<String> headers) throws IllegalStateException
+    {
+        if (headersSet || channel == null) {
+            throw new IllegalStateException("Headers already exist!");
+        }
+
+        BinaryLogFormat.writeHeader(buffer, mode, samplingPeriodUs, System.currentTimeMillis());
+        headersSet = true;
+    }
+
+    public void addRow(Iterable<String> values) throws IllegalStateException
+    {
+        Iterator<String> iterator = values.iterator();
+        long timestamp = (long) (Double.parseDouble(iterator.next()) * 1000000000L);
+
+        for (int i = 0; i < this.values.length; i++)
+        {
+            this.values[i] = Float.parseFloat(iterator.next());
+        }
+
+        addRow(timestamp, this.values);
+    }
+
+    public void addRow(long timestamp, float[] values) throws IllegalStateException
+    {
+        if(headersSet)
+        {
+            if (buffer.remaining() < BinaryLogFormat.RECORD_SIZE)
+            {
+                flush();
+            }
+
+            BinaryLogFormat.writeRecord(buffer, timestamp, values);
+        }
+        else
+        {
+            throw new IllegalStateException("Headers do not exist!");
+        }
+    }
+
+    public long getSize()
+    {
+        return size + buffer.position();
+    }
+
+    public void flushIfDue(long now)
+    {
+        // Rows are only buffered by size
+    }
+
+    public String writeToFile()
+    {
+        try {
+            flush();
+            channel.force(false);
+            channel.close();
+            outputStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
+
+        return file.getPath();
+    }
+
+    private void flush()
+    {
+        buffer.flip();
+        size += buffer.remaining();
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,232 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Converts logs in the {@link BinaryLogFormat} or the compressed
+ * {@link DeltaLogFormat} to the CSV layout written by {@link CsvDataLogger}.
+ * Does not depend on Android, so it can also be run offline:
+ *
+ * <pre>
+ * java BinaryLogConverter input.bin [output.csv]
+ * </pre>
+ */
+public final class BinaryLogConverter
+{
+    private BinaryLogConverter()
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: BinaryLogConverter input.bin|input.delta.gz [output.csv]");
+            System.exit(1);
+        }
+
+        File input = new File(args[0]);
+        File output;
+
+        if (args.length > 1)
+        {
+            output = new File(args[1]);
+        }
+        else
+        {
+            output = new File(input.getParentFile(), getCsvName(input.getName()));
+        }
+
+        String mode = isGzip(input) ? deltaToCsv(input, output).mode : toCsv(input, output).mode;
+
+        System.out.println("Converted " + mode + " log to " + output.getPath());
+    }
+
+    /**
+     * @param name the name of a log.
+     * @return the name with its extension replaced by ".csv". Only the last
+     * extension is replaced, except for the compound {@link DeltaLogFormat}
+     * extension, so dots earlier in the name are kept.
+     */
+    static String getCsvName(String name)
+    {
+        if (name.endsWith(DeltaLogFormat.FILE_EXTENSION))
+        {
+            return name.substring(0, name.length() - DeltaLogFormat.FILE_EXTENSION.length()) + ".csv";
+        }
+
+        int extension = name.lastIndexOf('.');
+
+        return (extension > 0 ? name.substring(0, extension) : name) + ".csv";
+    }
+
+    /**
+     * Convert a binary log to CSV.
+     *
+     * @param input  the binary log.
+     * @param output the CSV file to write.
+     * @return the header of the binary log.
+     * @throws IOException if the input can't be read or is not a binary log.
+     */
+    public static BinaryLogFormat.Header toCsv(File input, File output) throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream(input);
+        CSVPrinter csv = new CSVPrinter(new BufferedWriter(new FileWriter(output)),
+                CSVFormat.DEFAULT.withRecordSeparator(System.getProperty("line.separator")));
+
+        try
+        {
+            FileChannel channel = inputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+            read(channel, buffer);
+            BinaryLogFormat.Header header = BinaryLogFormat.readHeader(buffer);
+
+            csv.printRecord("Timestamp", "X", "Y", "Z");
+
+            ArrayList<String> row = new ArrayList<>(4);
+
+            do
+            {
+                while (buffer.remaining() >= BinaryLogFormat.RECORD_SIZE && !BinaryLogFormat.isUnwritten(buffer))
+                {
+                    row.clear();
+                    row.add(String.valueOf(buffer.getLong() / 1000000000.0f));
+                    row.add(String.valueOf(buffer.getFloat()));
+                    row.add(String.valueOf(buffer.getFloat()));
+                    row.add(String.valueOf(buffer.getFloat()));
+                    csv.printRecord(row);
+                }
+
+                if (buffer.remaining() >= BinaryLogFormat.RECORD_SIZE)
+                {
+                    // The rest of the file was preallocated but never written
+                    break;
+                }
+
+                buffer.compact();
+            } while (read(channel, buffer));
+
+            return header;
+        } finally
+        {
+            csv.close();
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Convert a compressed delta log to CSV.
+     *
+     * @param input  the compressed log.
+     * @param output the CSV file to write.
+     * @return the header of the compressed log.
+     * @throws IOException if the input can't be read or is not a delta log.
+     */
+    public static DeltaLogFormat.Header deltaToCsv(File input, File output) throws IOException
+    {
+        InputStream inputStream = new BufferedInputStream(new GZIPInputStream(new FileInputStream(input)));
+        CSVPrinter csv = new CSVPrinter(new BufferedWriter(new FileWriter(output)),
+                CSVFormat.DEFAULT.withRecordSeparator(System.getProperty("line.separator")));
+
+        try
+        {
+            DeltaLogFormat.Header header = DeltaLogFormat.readHeader(inputStream);
+            DeltaLogFormat.Decoder decoder = new DeltaLogFormat.Decoder(inputStream, header.quantum);
+
+            csv.printRecord("Timestamp", "X", "Y", "Z");
+
+            ArrayList<String> row = new ArrayList<>(4);
+            float[] values = new float[3];
+
+            while (true)
+            {
+                long timestamp;
+
+                try
+                {
+                    timestamp = decoder.decode(values);
+                } catch (EOFException e)
+                {
+                    break;
+                }
+
+                row.clear();
+                row.add(String.valueOf(timestamp / 1000000000.0f));
+                row.add(String.valueOf(values[0]));
+                row.add(String.valueOf(values[1]));
+                row.add(String.valueOf(values[2]));
+                csv.printRecord(row);
+            }
+
+            return header;
+        } finally
+        {
+            csv.close();
+            inputStream.close();
+        }
+    }
+
+    private static boolean isGzip(File input) throws IOException
+    {
+        FileInputStream inputStream = new FileInputStream(input);
+
+        try
+        {
+            return inputStream.read() == 0x1f && inputStream.read() == 0x8b;
+        } finally
+        {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Fill the buffer from the channel and flip it for reading.
+     *
+     * @return false if the end of the channel was reached.
+     */
+    private static boolean read(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        int read;
+
+        do
+        {
+            read = channel.read(buffer);
+        } while (read > 0 && buffer.hasRemaining());
+
+        buffer.flip();
+
+        return read >= 0 || buffer.remaining() >= BinaryLogFormat.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,162 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Layout of the binary log files. All values are little-endian.
+ *
+ * <pre>
+ * Header
+ *   int32   magic ("GEXL")
+ *   int16   format version
+ *   int16   header size in bytes, records start at this offset
+ *   int32   sampling period in microseconds (0 for SENSOR_DELAY_FASTEST)
+ *   int64   wall clock start time in milliseconds
+ *   int16   length of the sensor mode name
+ *   byte[]  sensor mode name, UTF-8
+ *
+ * Record
+ *   int64   timestamp in nanoseconds since the start of the log
+ *   float32 x
+ *   float32 y
+ *   float32 z
+ * </pre>
+ *
+ * A log that was not closed keeps the zero filled tail
+ * {@link MappedDataLogger} preallocates after its last record. Timestamps
+ * are nanoseconds after the start of the log, so no logged record is all
+ * zero and readers stop at the first one.
+ */
+public final class BinaryLogFormat
+{
+    public static final int MAGIC = 0x4C584547;
+    public static final short VERSION = 1;
+
+    public static final int RECORD_SIZE = 8 + 3 * 4;
+
+    public static final String FILE_EXTENSION = ".bin";
+
+    private static final int FIXED_HEADER_SIZE = 4 + 2 + 2 + 4 + 8 + 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BinaryLogFormat()
+    {
+    }
+
+    /**
+     * @param mode the sensor mode name.
+     * @return the size of the header written for the mode.
+     */
+    public static int getHeaderSize(String mode)
+    {
+        return FIXED_HEADER_SIZE + mode.getBytes(UTF_8).length;
+    }
+
+    public static void writeHeader(ByteBuffer buffer, String mode, int samplingPeriodUs, long startTime)
+    {
+        byte[] modeBytes = mode.getBytes(UTF_8);
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) (FIXED_HEADER_SIZE + modeBytes.length));
+        buffer.putInt(samplingPeriodUs);
+        buffer.putLong(startTime);
+        buffer.putShort((short) modeBytes.length);
+        buffer.put(modeBytes);
+    }
+
+    public static void writeRecord(ByteBuffer buffer, long timestamp, float[] values)
+    {
+        buffer.putLong(timestamp);
+        buffer.putFloat(values[0]);
+        buffer.putFloat(values[1]);
+        buffer.putFloat(values[2]);
+    }
+
+    /**
+     * @param buffer a buffer with at least a whole record remaining.
+     * @return true if the record at the position of the buffer is all zero,
+     * the unwritten end of a log that was not closed.
+     */
+    public static boolean isUnwritten(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+
+        return buffer.getLong(position) == 0
+                && buffer.getInt(position + 8) == 0
+                && buffer.getInt(position + 12) == 0
+                && buffer.getInt(position + 16) == 0;
+    }
+
+    /**
+     * Read a header. On return the buffer is positioned at the first record.
+     *
+     * @param buffer a buffer containing at least the whole header.
+     * @return the header.
+     * @throws IOException if the buffer does not start with a supported
+     *                     header.
+     */
+    public static Header readHeader(ByteBuffer buffer) throws IOException
+    {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < FIXED_HEADER_SIZE || buffer.getInt() != MAGIC)
+        {
+            throw new IOException("Not a binary log file!");
+        }
+
+        Header header = new Header();
+        header.version = buffer.getShort();
+
+        if (header.version > VERSION)
+        {
+            throw new IOException("Unsupported log version " + header.version);
+        }
+
+        int start = buffer.position() - 6;
+        int headerSize = buffer.getShort();
+        header.samplingPeriodUs = buffer.getInt();
+        header.startTime = buffer.getLong();
+
+        byte[] modeBytes = new byte[buffer.getShort()];
+        buffer.get(modeBytes);
+        header.mode = new String(modeBytes, UTF_8);
+
+        // Skip any fields added by newer minor revisions of the header
+        buffer.position(start + headerSize);
+
+        return header;
+    }
+
+    /**
+     * The decoded header of a binary log file.
+     */
+    public static final class Header
+    {
+        public short version;
+        public int samplingPeriodUs;
+        public long startTime;
+        public String mode;
+    }
+}
@@ -0,0 +1,171 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Writes delta encoded, quantized records in the {@link DeltaLogFormat} and
+ * compresses them with gzip. Meant for logs that are uploaded over metered
+ * links, they can be converted to CSV with {@link BinaryLogConverter}.
+ */
+public class CompressedDataLogger implements DataLoggerInterface
+{
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private FileOutputStream fileOutputStream;
+    private ReusableGzipOutputStream gzipOutputStream;
+    private OutputStream outputStream;
+    // The bytes logged so far, before compression
+    private long size;
+    private DeltaLogFormat.Encoder encoder;
+    private byte[] record = new byte[DeltaLogFormat.MAX_RECORD_SIZE];
+    private boolean headersSet;
+    private File file;
+    private Context context;
+
+    private String mode;
+    private int samplingPeriodUs;
+    private float quantum;
+
+    private float[] values = new float[3];
+
+    /**
+     * Create a new instance.
+     *
+     * @param deflater a deflater created with {@code nowrap} set to true. It is
+     *                 reset, not released, when the log is written.
+     * @param buffer   the buffer used to drain the deflater.
+     * @param quantum  the size of one angle step in radians, see
+     *                 {@link DeltaLogFormat#DEFAULT_QUANTUM}.
+     */
+    public CompressedDataLogger(Context context, File file, Deflater deflater, byte[] buffer, String mode,
+                                int samplingPeriodUs, float quantum)
+    {
+        this.context = context;
+        this.file = file;
+        this.mode = mode;
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.quantum = quantum;
+
+        encoder = new DeltaLogFormat.Encoder(quantum);
+
+        try
+        {
+            fileOutputStream = new FileOutputStream(file);
+            // Deflate works best on larger blocks than a single record
+            gzipOutputStream = new ReusableGzipOutputStream(fileOutputStream, deflater, buffer);
+            outputStream = new BufferedOutputStream(gzipOutputStream, BUFFER_SIZE);
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        headersSet = false;
+    }
+
+    /**
+     * The column names are fixed by the format, so this writes the header
+     * with the sensor mode and rate instead.
+     */
+    public void setHeaders(Iterable<String> headers) throws IllegalStateException
+    {
+        if (headersSet || outputStream == null) {
+            throw new IllegalStateException("Headers already exist!");
+        }
+
+        try
+        {
+            DeltaLogFormat.writeHeader(outputStream, mode, samplingPeriodUs, System.currentTimeMillis(), quantum);
+            size += DeltaLogFormat.getHeaderSize(mode);
+            headersSet = true;
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    public void addRow(Iterable<String> values) throws IllegalStateException
+    {
+        Iterator<String> iterator = values.iterator();
+        long timestamp = (long) (Double.parseDouble(iterator.next()) * 1000000000L);
+
+        for (int i = 0; i < this.values.length; i++)
+        {
+            this.values[i] = Float.parseFloat(iterator.next());
+        }
+
+        addRow(timestamp, this.values);
+    }
+
+    public void addRow(long timestamp, float[] values) throws IllegalStateException
+    {
+        if(headersSet)
+        {
+            try
+            {
+                int length = encoder.encode(timestamp, values, record);
+                outputStream.write(record, 0, length);
+                size += length;
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        else
+        {
+            throw new IllegalStateException("Headers do not exist!");
+        }
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public void flushIfDue(long now)
+    {
+        // Rows are not batched by time
+    }
+
+    public String writeToFile()
+    {
+        try {
+            outputStream.flush();
+            // Finish the gzip stream without closing the file so it can be synced
+            gzipOutputStream.finish();
+            fileOutputStream.getFD().sync();
+            fileOutputStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
+
+        return file.getPath();
+    }
+}
@@ -4,12 +4,20 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 
+import com.kircherelectronics.gyroscopeexplorer.util.FixedPointFormat;
+
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 /*
  * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
@@ -33,22 +41,76 @@ import java.io.IOException;
  */
 public class CsvDataLogger implements DataLoggerInterface
 {
+    // Leave committed batches to the writer's buffer
+    public static final String DURABILITY_NONE = "none";
+    // Flush every batch to the operating system
+    public static final String DURABILITY_FLUSH = "flush";
+    // Flush and sync every batch to the storage device
+    public static final String DURABILITY_FSYNC = "fsync";
+
+    private static final int BATCH_BUFFER_SIZE = 16 * 1024;
+
+    private static final int TIMESTAMP_DECIMALS = 6;
+    private static final int VALUE_DECIMALS = 7;
+
     private CSVPrinter csv;
-    private FileWriter fileWriter;
+    private FileOutputStream fileOutputStream;
+    private ReusableGzipOutputStream gzipOutputStream;
+    private CountingWriter fileWriter;
     private boolean headersSet;
     private File file;
     private Context context;
 
+    // Numeric rows are formatted into this buffer and committed in batches
+    private final char[] batch = new char[BATCH_BUFFER_SIZE];
+    private final char[] recordSeparator;
+    private final int maxRowLength;
+    private int batchLength = 0;
+    private int batchRows = 0;
+    private long batchStart = 0;
+
+    private int batchSize = 1;
+    private long batchInterval = 0;
+    private String durability = DURABILITY_NONE;
+
     public CsvDataLogger(Context context, File file)
+    {
+        this(context, file, null, null);
+    }
+
+    /**
+     * Create a new instance that compresses the log with gzip.
+     *
+     * @param deflater a deflater created with {@code nowrap} set to true, or
+     *                 null to write plain text. It is reset, not released,
+     *                 when the log is written.
+     * @param buffer   the buffer used to drain the deflater.
+     */
+    public CsvDataLogger(Context context, File file, Deflater deflater, byte[] buffer)
     {
         this.context = context;
         this.file = file;
 
-        CSVFormat csvFileFormat = CSVFormat.DEFAULT.withRecordSeparator(System.getProperty("line.separator"));
+        String lineSeparator = System.getProperty("line.separator");
+        CSVFormat csvFileFormat = CSVFormat.DEFAULT.withRecordSeparator(lineSeparator);
+
+        recordSeparator = lineSeparator.toCharArray();
+        maxRowLength = FixedPointFormat.maxLength(TIMESTAMP_DECIMALS) + 3 * (1 + FixedPointFormat.maxLength(VALUE_DECIMALS))
+                + recordSeparator.length;
 
         try
         {
-            fileWriter = new FileWriter(file);
+            fileOutputStream = new FileOutputStream(file);
+
+            if (deflater != null)
+            {
+                gzipOutputStream = new ReusableGzipOutputStream(fileOutputStream, deflater, buffer);
+                fileWriter = new CountingWriter(new BufferedWriter(new OutputStreamWriter(gzipOutputStream)));
+            }
+            else
+            {
+                fileWriter = new CountingWriter(new BufferedWriter(new OutputStreamWriter(fileOutputStream)));
+            }
             csv = new CSVPrinter(fileWriter, csvFileFormat);
         } catch (IOException e)
         {
@@ -58,6 +120,24 @@ public class CsvDataLogger implements DataLoggerInterface
         headersSet = false;
     }
 
+    /**
+     * Commit numeric rows in batches. A batch is written once it holds
+     * batchSize rows or once batchInterval has passed since its first row,
+     * whichever comes first.
+     *
+     * @param batchSize     the number of rows per batch.
+     * @param batchInterval the longest time a row waits in a batch in
+     *                      milliseconds, 0 for no limit.
+     * @param durability    {@link #DURABILITY_NONE}, {@link #DURABILITY_FLUSH}
+     *                      or {@link #DURABILITY_FSYNC}.
+     */
+    public void setBatching(int batchSize, long batchInterval, String durability)
+    {
+        this.batchSize = Math.max(1, batchSize);
+        this.batchInterval = TimeUnit.MILLISECONDS.toNanos(batchInterval);
+        this.durability = durability;
+    }
+
     public void setHeaders(Iterable<String> headers) throws IllegalStateException
     {
         if (headersSet || csv == null) {
@@ -79,6 +159,7 @@ public class CsvDataLogger implements DataLoggerInterface
         {
             try
             {
+                commitBatch();
                 csv.printRecord(values);
             } catch (IOException e)
             {
@@ -91,10 +172,87 @@ public class CsvDataLogger implements DataLoggerInterface
         }
     }
 
+    /**
+     * Format the row into the batch buffer without going through strings,
+     * and commit the batch when it is full.
+     */
+    public void addRow(long timestamp, float[] values) throws IllegalStateException
+    {
+        if(!headersSet)
+        {
+            throw new IllegalStateException("Headers do not exist!");
+        }
+
+        try
+        {
+            if (batch.length - batchLength < maxRowLength)
+            {
+                commitBatch();
+            }
+
+            if (batchRows == 0 && batchInterval > 0)
+            {
+                batchStart = System.nanoTime();
+            }
+
+            int length = FixedPointFormat.format(timestamp / 1000000000.0, TIMESTAMP_DECIMALS, batch, batchLength);
+
+            for (int i = 0; i < 3; i++)
+            {
+                batch[length++] = ',';
+                length = FixedPointFormat.format(values[i], VALUE_DECIMALS, batch, length);
+            }
+
+            System.arraycopy(recordSeparator, 0, batch, length, recordSeparator.length);
+            batchLength = length + recordSeparator.length;
+            batchRows++;
+
+            if (batchRows >= batchSize || (batchInterval > 0 && System.nanoTime() - batchStart >= batchInterval))
+            {
+                commitBatch();
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rows still in the batch count as logged. The logs are ASCII, so every
+     * character is a byte.
+     */
+    public long getSize()
+    {
+        return fileWriter.getCount() + batchLength;
+    }
+
+    /**
+     * Commit the batch once its first row has waited for the batch interval.
+     */
+    public void flushIfDue(long now)
+    {
+        if (batchRows > 0 && batchInterval > 0 && now - batchStart >= batchInterval)
+        {
+            try
+            {
+                commitBatch();
+            } catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public String writeToFile()
     {
         try {
+            commitBatch();
             fileWriter.flush();
+            if (gzipOutputStream != null) {
+                gzipOutputStream.finish();
+            }
+            // Make sure the log survives a crash once it is closed
+            fileOutputStream.getFD().sync();
             fileWriter.close();
             csv.close();
         } catch (IOException e) {
@@ -105,4 +263,72 @@ public class CsvDataLogger implements DataLoggerInterface
 
         return file.getPath();
     }
+
+    private void commitBatch() throws IOException
+    {
+        if (batchLength == 0)
+        {
+            return;
+        }
+
+        fileWriter.write(batch, 0, batchLength);
+        batchLength = 0;
+        batchRows = 0;
+
+        if (DURABILITY_FLUSH.equals(durability) || DURABILITY_FSYNC.equals(durability))
+        {
+            fileWriter.flush();
+
+            // The deflater keeps its input until it has a block worth
+            // compressing, so push out what the batch gave it
+            if (gzipOutputStream != null)
+            {
+                gzipOutputStream.syncFlush();
+            }
+
+            if (DURABILITY_FSYNC.equals(durability))
+            {
+                fileOutputStream.getFD().sync();
+            }
+        }
+    }
+
+    /**
+     * Counts the characters written through it, buffered or not.
+     */
+    private static class CountingWriter extends FilterWriter
+    {
+        private long count = 0;
+
+        CountingWriter(Writer out)
+        {
+            super(out);
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException
+        {
+            out.write(chars, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String string, int offset, int length) throws IOException
+        {
+            out.write(string, offset, length);
+            count += length;
+        }
+    }
 }
@@ -24,5 +24,29 @@ public interface DataLoggerInterface
 {
     void setHeaders(Iterable<String> headers) throws IllegalStateException;
     void addRow(Iterable<String> values) throws IllegalStateException;
+
+    /**
+     * Add a row of numeric values.
+     *
+     * @param timestamp the timestamp in nanoseconds since the start of the log.
+     * @param values the x, y and z values.
+     */
+    void addRow(long timestamp, float[] values) throws IllegalStateException;
+
+    /**
+     * @return the number of bytes logged while the log is open, including
+     * any still buffered. Compressed logs count the bytes before compression.
+     */
+    long getSize();
+
+    /**
+     * Write out rows that have waited longer than the logger lets them. The
+     * writer thread calls this whenever it wakes without a row to write, so
+     * a batch goes out on time even after rows stop arriving.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     */
+    void flushIfDue(long now);
+
     String writeToFile();
 }
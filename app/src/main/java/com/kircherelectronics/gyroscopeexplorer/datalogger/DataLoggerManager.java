@@ -1,11 +1,18 @@
 package com.kircherelectronics.gyroscopeexplorer.datalogger;
 
 import android.content.Context;
+import android.os.Build;
 import android.util.Log;
 
+import com.kircherelectronics.gyroscopeexplorer.sensor.OrientationSnapshot;
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyMonitor;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
 
 /*
  * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
@@ -30,62 +37,242 @@ import java.util.Calendar;
 public class DataLoggerManager implements Runnable {
     private static final String TAG = DataLoggerManager.class.getSimpleName();
 
+    public final static String LOG_FORMAT_CSV = "csv";
+    public final static String LOG_FORMAT_BINARY = "binary";
+    public final static String LOG_FORMAT_MAPPED = "mapped";
+
+    public final static String COMPRESSION_NONE = "none";
+    public final static String COMPRESSION_GZIP = "gzip";
+
     private final static String DEFAULT_APPLICATION_DIRECTORY = "GyroscopeExplorer";
 
     private final static long THREAD_SLEEP_TIME = 20;
     private final static String FILE_NAME_SEPARATOR = "-";
 
+    // As large as the processor's queue, so a batch from
+    // BatchedGyroscopeSensor fits here too when it is passed on in one go
+    private final static int SAMPLE_QUEUE_CAPACITY = 4096;
+
     // boolean to indicate if the data should be written to a file.
     private volatile boolean logData = false;
 
+    // Write every sensor sample instead of polling the latest rotation
+    private boolean sampleExact = false;
+    private volatile boolean sampleExactLogging = false;
+
+    private String logFormat = LOG_FORMAT_CSV;
+    private String compression = COMPRESSION_NONE;
+    private float deltaQuantum = DeltaLogFormat.DEFAULT_QUANTUM;
+
+    // Batching of CSV rows
+    private int csvBatchSize = 1;
+    private long csvBatchInterval = 0;
+    private String csvDurability = CsvDataLogger.DURABILITY_NONE;
+
+    // Reused by the writer thread for every compressed log and segment
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] deflaterBuffer = new byte[8 * 1024];
+
+    // Roll the log over to a new segment at this size or duration, 0 for no limit
+    private long segmentSize = 0;
+    private long segmentDuration = 0;
+
+    // Recorded in the header of binary logs
+    private String sensorMode = "";
+    private int samplingPeriodUs = 0;
+
     // Log output time stamp
-    private long logTime = 0;
+    private long logTimeNanos = 0;
+
+    private final SampleQueue sampleQueue;
+    private final long[] sampleTimestamp;
+    private final float[] sampleRotation;
+
+    // The latest rotation, read by the writer when polling
+    private final OrientationSnapshot latestRotation = new OrientationSnapshot();
+    private long latestRotationStart = 0;
+
+    // Set by the writer thread before it parks on an empty queue
+    private volatile boolean writerWaiting = false;
 
     private ArrayList<String> csvHeaders;
-    private ArrayList<String> csvValues;
 
     private DataLoggerInterface dataLogger;
 
-    private Context context;
+    private volatile LatencyMonitor latencyMonitor;
 
-    private volatile ArrayList<String> rotation;
+    private Context context;
 
-    private Thread thread;
+    private volatile Thread thread;
 
     public DataLoggerManager(Context context) {
         this.context = context;
         csvHeaders = getCsvHeaders();
-        csvValues = new ArrayList<>();
-        rotation = new ArrayList<>();
+        sampleQueue = new SampleQueue(SAMPLE_QUEUE_CAPACITY);
+        sampleTimestamp = new long[1];
+        sampleRotation = new float[3];
     }
 
     @Override
     public void run() {
+        if (sampleExactLogging) {
+            logSamples();
+        } else {
+            logPolled();
+        }
+    }
+
+    /**
+     * Write whatever rotation is current every {@link #THREAD_SLEEP_TIME}
+     * milliseconds.
+     */
+    private void logPolled() {
         while (logData && !Thread.currentThread().isInterrupted()) {
             // Check if the row is filled and ready to be written to the
             // log.
             logData();
+            dataLogger.flushIfDue(System.nanoTime());
 
-            try {
-                Thread.sleep(THREAD_SLEEP_TIME);
-            } catch (InterruptedException e) {
-                // very important to ensure the thread is killed
-                Thread.currentThread().interrupt();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(THREAD_SLEEP_TIME));
+        }
+    }
+
+    /**
+     * Write every queued sample exactly once, in order, with its own
+     * timestamp. The thread parks while the queue is empty and is woken by
+     * the producer.
+     */
+    private void logSamples() {
+        while (logData && !Thread.currentThread().isInterrupted()) {
+            if (!drainSamples()) {
+                writerWaiting = true;
+                // Re-check after publishing the flag so a wake up can't be missed
+                if (sampleQueue.isEmpty() && logData) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(THREAD_SLEEP_TIME));
+                }
+                writerWaiting = false;
+                // Batches still go out on time when samples stop arriving
+                dataLogger.flushIfDue(System.nanoTime());
             }
         }
 
-        // very important to ensure the thread is killed
-        Thread.currentThread().interrupt();
+        // Flush whatever arrived before the log was stopped
+        drainSamples();
+    }
+
+    private boolean drainSamples() {
+        boolean drained = false;
+
+        while (sampleQueue.poll(sampleTimestamp, sampleRotation)) {
+            logSample(sampleTimestamp[0], sampleRotation);
+            drained = true;
+        }
+
+        return drained;
+    }
+
+
+    /**
+     * Log every sample passed to {@link #setRotation(float[], long)} instead
+     * of polling the latest rotation. Takes effect the next time the log is
+     * started.
+     *
+     * @param sampleExact true to log every sample.
+     */
+    public void setSampleExact(boolean sampleExact) {
+        this.sampleExact = sampleExact;
+    }
+
+    /**
+     * Set the format of the log. Takes effect the next time the log is
+     * started.
+     *
+     * @param logFormat {@link #LOG_FORMAT_CSV}, {@link #LOG_FORMAT_BINARY} or
+     *                  {@link #LOG_FORMAT_MAPPED}.
+     */
+    public void setLogFormat(String logFormat) {
+        this.logFormat = logFormat;
+    }
+
+    /**
+     * Compress the log. Binary logs are also delta encoded and quantized
+     * before they are compressed, both binary formats then write the same
+     * {@link DeltaLogFormat} through a stream, so a compressed log is never
+     * memory mapped. CSV logs are only gzipped. Takes effect the next time
+     * the log is started.
+     *
+     * @param compression {@link #COMPRESSION_NONE} or {@link #COMPRESSION_GZIP}.
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Set the angle step compressed binary logs are quantized to. Takes
+     * effect the next time the log is started.
+     *
+     * @param deltaQuantum the step in radians, see
+     *                     {@link DeltaLogFormat#DEFAULT_QUANTUM}.
+     */
+    public void setDeltaQuantum(float deltaQuantum) {
+        this.deltaQuantum = deltaQuantum;
+    }
+
+    /**
+     * Commit CSV rows in batches. Takes effect the next time the log is
+     * started.
+     *
+     * @see CsvDataLogger#setBatching(int, long, String)
+     */
+    public void setCsvBatching(int batchSize, long batchInterval, String durability) {
+        this.csvBatchSize = batchSize;
+        this.csvBatchInterval = batchInterval;
+        this.csvDurability = durability;
+    }
+
+    /**
+     * Split the log into segments that roll over at a maximum size or
+     * duration. Takes effect the next time the log is started.
+     *
+     * @param segmentSize     the maximum size of a segment in bytes, 0 for no limit.
+     * @param segmentDuration the maximum duration of a segment in milliseconds, 0 for no limit.
+     */
+    public void setSegmentation(long segmentSize, long segmentDuration) {
+        this.segmentSize = segmentSize;
+        this.segmentDuration = segmentDuration;
+    }
+
+    /**
+     * Describe the sensor being logged. Formats that support it record this
+     * in the header of the log.
+     *
+     * @param sensorMode       the name of the sensor mode.
+     * @param samplingPeriodUs the sampling period in microseconds, or 0 for
+     *                         SENSOR_DELAY_FASTEST.
+     */
+    public void setSensorInfo(String sensorMode, int samplingPeriodUs) {
+        this.sensorMode = sensorMode;
+        this.samplingPeriodUs = samplingPeriodUs;
     }
 
+    /**
+     * Record how long each sample takes to reach the log, and the samples
+     * dropped on the way.
+     *
+     * @param latencyMonitor the monitor, or null to record nothing.
+     */
+    public void setLatencyMonitor(LatencyMonitor latencyMonitor) {
+        this.latencyMonitor = latencyMonitor;
+    }
 
     public void startDataLog() throws IllegalStateException {
         if (!logData) {
+            sampleExactLogging = sampleExact;
+            sampleQueue.clear();
+            latestRotationStart = latestRotation.getSequence();
             logData = true;
-            logTime = System.currentTimeMillis();
-            File file = getFile(this.getFilePath(), this.getFileName());
-            Log.d(TAG, "Writing log to file "+file.getAbsolutePath());
-            dataLogger = new CsvDataLogger(context, file);
+            logTimeNanos = System.nanoTime();
+            dataLogger = createDataLogger();
             dataLogger.setHeaders(csvHeaders);
             thread = new Thread(this);
             thread.start();
@@ -97,8 +284,19 @@ public class DataLoggerManager implements Runnable {
     public String stopDataLog() throws IllegalStateException {
         if (logData) {
             logData = false;
-            thread.interrupt();
+            LockSupport.unpark(thread);
+            try {
+                // Let the writer finish its last row before the file is closed
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             thread = null;
+
+            if (sampleQueue.getDropped() > 0) {
+                Log.w(TAG, "Dropped " + sampleQueue.getDropped() + " samples");
+            }
+
             return dataLogger.writeToFile();
         }else {
             throw new IllegalStateException("Logger is already stopped!");
@@ -106,35 +304,139 @@ public class DataLoggerManager implements Runnable {
     }
 
     public void setRotation(float[] rotation) {
-        if(rotation != null) {
-            synchronized (rotation) {
-                this.rotation.clear();
-                for (int i = 0; i < 3; i++) {
-                    this.rotation.add(String.valueOf(rotation[i]));
+        setRotation(rotation, System.nanoTime());
+    }
+
+    /**
+     * Set the current rotation. The sample is copied into a preallocated
+     * ring buffer, or into a snapshot of the latest rotation when polling, as
+     * primitives and is only serialized by the writer thread, so this does
+     * not allocate. Must only be called from one thread.
+     *
+     * @param rotation  the x, y and z rotation.
+     * @param timestamp the {@link System#nanoTime()} the sample was received.
+     */
+    public void setRotation(float[] rotation, long timestamp) {
+        if (rotation != null && logData) {
+            if (!sampleExactLogging) {
+                latestRotation.publish(timestamp, rotation);
+                return;
+            }
+
+            if (!sampleQueue.offer(timestamp, rotation)) {
+                LatencyMonitor latencyMonitor = this.latencyMonitor;
+
+                if (latencyMonitor != null) {
+                    latencyMonitor.countLoggerDropped();
                 }
             }
+
+            if (writerWaiting) {
+                LockSupport.unpark(thread);
+            }
         }
     }
 
+    private void logSample(long timestamp, float[] rotation) {
+        dataLogger.addRow(timestamp - logTimeNanos, rotation);
+        recordLogged(timestamp);
+    }
+
     private void logData() {
-        csvValues.clear();
-        csvValues.add(String.valueOf((System.currentTimeMillis() - logTime) / 1000.0f));
+        // Only the newest sample is written when polling, once one has
+        // arrived since the log was started
+        if (latestRotation.read(sampleTimestamp, sampleRotation) > latestRotationStart) {
+            dataLogger.addRow(System.nanoTime() - logTimeNanos, sampleRotation);
+            recordLogged(sampleTimestamp[0]);
+        }
+    }
+
+    private void recordLogged(long timestamp) {
+        LatencyMonitor latencyMonitor = this.latencyMonitor;
+
+        if (latencyMonitor != null) {
+            latencyMonitor.recordLogged(timestamp);
+        }
+    }
+
+    private DataLoggerInterface createDataLogger() {
+        String fileName = getFileName();
+        String extension = getFileExtension();
+
+        if (segmentSize > 0 || segmentDuration > 0) {
+            File dir = getDirectory(getFilePath());
+            Log.d(TAG, "Writing segmented log " + fileName + " to " + dir.getAbsolutePath());
 
-        synchronized (this) {
-            csvValues.addAll(rotation);
+            return new SegmentedDataLogger(context, dir, fileName, extension, new SegmentedDataLogger.Factory() {
+                @Override
+                public DataLoggerInterface create(File file) {
+                    return createDataLogger(file);
+                }
+            }, segmentSize, TimeUnit.MILLISECONDS.toNanos(segmentDuration));
         }
 
-        dataLogger.addRow(csvValues);
+        File file = getFile(getFilePath(), fileName + extension);
+        Log.d(TAG, "Writing log to file " + file.getAbsolutePath());
+        return createDataLogger(file);
+    }
+
+    private DataLoggerInterface createDataLogger(File file) {
+        if (LOG_FORMAT_CSV.equals(logFormat)) {
+            boolean compressed = COMPRESSION_GZIP.equals(compression);
+            CsvDataLogger csvDataLogger = compressed
+                    ? new CsvDataLogger(context, file, deflater, deflaterBuffer) : new CsvDataLogger(context, file);
+            String durability = csvDurability;
+
+            // The deflater can't be flushed before KitKat, so a gzipped
+            // batch can't be made to reach the file
+            if (compressed && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                    && !CsvDataLogger.DURABILITY_NONE.equals(durability)) {
+                Log.w(TAG, "Gzipped CSV batches can't be flushed on this device");
+                durability = CsvDataLogger.DURABILITY_NONE;
+            }
+
+            csvDataLogger.setBatching(csvBatchSize, csvBatchInterval, durability);
+            return csvDataLogger;
+        }
+
+        if (COMPRESSION_GZIP.equals(compression)) {
+            return new CompressedDataLogger(context, file, deflater, deflaterBuffer, sensorMode, samplingPeriodUs,
+                    deltaQuantum);
+        }
+
+        if (LOG_FORMAT_BINARY.equals(logFormat)) {
+            return new BinaryDataLogger(context, file, sensorMode, samplingPeriodUs);
+        }
+
+        if (LOG_FORMAT_MAPPED.equals(logFormat)) {
+            return new MappedDataLogger(context, file, sensorMode, samplingPeriodUs);
+        }
+
+        throw new IllegalStateException("Unknown log format " + logFormat);
+    }
+
+    private String getFileExtension() {
+        boolean compressed = COMPRESSION_GZIP.equals(compression);
+
+        if (LOG_FORMAT_CSV.equals(logFormat)) {
+            return compressed ? ".csv.gz" : ".csv";
+        }
+
+        return compressed ? DeltaLogFormat.FILE_EXTENSION : BinaryLogFormat.FILE_EXTENSION;
     }
 
     private File getFile(String filePath, String fileName) {
+        return new File(getDirectory(filePath), fileName);
+    }
+
+    private File getDirectory(String filePath) {
         File dir = new File(filePath);
 
         if (!dir.exists()) {
             dir.mkdirs();
         }
 
-        return new File(dir, fileName);
+        return dir;
     }
 
     private String getFilePath() {
@@ -149,7 +451,7 @@ public class DataLoggerManager implements Runnable {
                         (FILE_NAME_SEPARATOR).
                         append(c.get(Calendar.DAY_OF_MONTH)).append(FILE_NAME_SEPARATOR).append(c.get(Calendar.HOUR))
                 .append("-").append(c.get(Calendar.MINUTE)).append(FILE_NAME_SEPARATOR).append(c.get(Calendar.SECOND)
-                ).append(".csv").toString();
+                ).toString();
     }
 
     private ArrayList<String> getCsvHeaders() {
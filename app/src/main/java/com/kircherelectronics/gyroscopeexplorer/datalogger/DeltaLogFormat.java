@@ -0,0 +1,293 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Delta encoded layout of the compressed logs. The whole file is a gzip
+ * stream, the layout below describes its decompressed content. Samples of a
+ * sensor change slowly from one to the next, so storing small deltas as
+ * variable length integers leaves deflate far less to do than raw floats.
+ *
+ * <pre>
+ * Header, little-endian
+ *   int32   magic ("GEXD")
+ *   int16   format version
+ *   int16   header size in bytes, records start at this offset
+ *   int32   sampling period in microseconds (0 for SENSOR_DELAY_FASTEST)
+ *   int64   wall clock start time in milliseconds
+ *   float32 quantum, the size of one angle step in radians
+ *   int16   length of the sensor mode name
+ *   byte[]  sensor mode name, UTF-8
+ *
+ * Record, zigzag varints
+ *   timestamp delta of delta in microseconds
+ *   x, y and z deltas in quanta
+ * </pre>
+ */
+public final class DeltaLogFormat
+{
+    public static final int MAGIC = 0x44584547;
+    public static final short VERSION = 1;
+
+    public static final String FILE_EXTENSION = ".delta.gz";
+
+    // Ten microradians, below the noise of a phone's orientation estimate.
+    // The step must stay well above the float resolution of the angles, which
+    // is about 2.4e-7 rad near pi, or the deltas only encode rounding noise.
+    public static final float DEFAULT_QUANTUM = 1e-5f;
+
+    // Four varints of at most ten bytes each
+    public static final int MAX_RECORD_SIZE = 4 * 10;
+
+    private static final int FIXED_HEADER_SIZE = 4 + 2 + 2 + 4 + 8 + 4 + 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private DeltaLogFormat()
+    {
+    }
+
+    /**
+     * @param mode the sensor mode name.
+     * @return the size of the header written for the mode, before compression.
+     */
+    public static int getHeaderSize(String mode)
+    {
+        return FIXED_HEADER_SIZE + mode.getBytes(UTF_8).length;
+    }
+
+    public static void writeHeader(OutputStream out, String mode, int samplingPeriodUs, long startTime, float quantum)
+            throws IOException
+    {
+        byte[] modeBytes = mode.getBytes(UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_HEADER_SIZE + modeBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) buffer.capacity());
+        buffer.putInt(samplingPeriodUs);
+        buffer.putLong(startTime);
+        buffer.putFloat(quantum);
+        buffer.putShort((short) modeBytes.length);
+        buffer.put(modeBytes);
+
+        out.write(buffer.array());
+    }
+
+    /**
+     * Read a header. On return the stream is positioned at the first record.
+     *
+     * @param in the decompressed stream.
+     * @return the header.
+     * @throws IOException if the stream does not start with a supported
+     *                     header.
+     */
+    public static Header readHeader(InputStream in) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(readFully(in, new byte[FIXED_HEADER_SIZE])).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new IOException("Not a delta log file!");
+        }
+
+        Header header = new Header();
+        header.version = buffer.getShort();
+
+        if (header.version > VERSION)
+        {
+            throw new IOException("Unsupported log version " + header.version);
+        }
+
+        int headerSize = buffer.getShort();
+        header.samplingPeriodUs = buffer.getInt();
+        header.startTime = buffer.getLong();
+        header.quantum = buffer.getFloat();
+
+        int modeLength = buffer.getShort();
+        header.mode = new String(readFully(in, new byte[modeLength]), UTF_8);
+
+        // Skip any fields added by newer minor revisions of the header
+        readFully(in, new byte[headerSize - FIXED_HEADER_SIZE - modeLength]);
+
+        return header;
+    }
+
+    private static byte[] readFully(InputStream in, byte[] bytes) throws IOException
+    {
+        int offset = 0;
+
+        while (offset < bytes.length)
+        {
+            int read = in.read(bytes, offset, bytes.length - offset);
+
+            if (read < 0)
+            {
+                throw new EOFException();
+            }
+
+            offset += read;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * The decoded header of a delta log file.
+     */
+    public static final class Header
+    {
+        public short version;
+        public int samplingPeriodUs;
+        public long startTime;
+        public float quantum;
+        public String mode;
+    }
+
+    /**
+     * Encodes records relative to the previous record. Does not allocate.
+     */
+    public static final class Encoder
+    {
+        private final float quantum;
+
+        private long lastTimestamp = 0;
+        private long lastDelta = 0;
+        private final long[] lastValues = new long[3];
+
+        public Encoder(float quantum)
+        {
+            this.quantum = quantum;
+        }
+
+        /**
+         * Encode a record.
+         *
+         * @param timestamp the timestamp in nanoseconds.
+         * @param values    the x, y and z values.
+         * @param out       receives the record, must have room for
+         *                  {@link #MAX_RECORD_SIZE} bytes.
+         * @return the number of bytes written.
+         */
+        public int encode(long timestamp, float[] values, byte[] out)
+        {
+            long micros = timestamp / 1000;
+            long delta = micros - lastTimestamp;
+
+            int position = putVarLong(out, 0, delta - lastDelta);
+
+            lastTimestamp = micros;
+            lastDelta = delta;
+
+            for (int i = 0; i < 3; i++)
+            {
+                long value = Math.round(values[i] / (double) quantum);
+                position = putVarLong(out, position, value - lastValues[i]);
+                lastValues[i] = value;
+            }
+
+            return position;
+        }
+    }
+
+    /**
+     * Decodes the records written by an {@link Encoder}.
+     */
+    public static final class Decoder
+    {
+        private final InputStream in;
+        private final float quantum;
+
+        private long lastTimestamp = 0;
+        private long lastDelta = 0;
+        private final long[] lastValues = new long[3];
+
+        public Decoder(InputStream in, float quantum)
+        {
+            this.in = in;
+            this.quantum = quantum;
+        }
+
+        /**
+         * Decode the next record.
+         *
+         * @param values receives the x, y and z values.
+         * @return the timestamp of the record in nanoseconds.
+         * @throws EOFException at the end of the stream.
+         */
+        public long decode(float[] values) throws IOException
+        {
+            lastDelta += getVarLong();
+            lastTimestamp += lastDelta;
+
+            for (int i = 0; i < 3; i++)
+            {
+                lastValues[i] += getVarLong();
+                values[i] = (float) (lastValues[i] * (double) quantum);
+            }
+
+            return lastTimestamp * 1000;
+        }
+
+        private long getVarLong() throws IOException
+        {
+            long result = 0;
+            int shift = 0;
+            int b;
+
+            do
+            {
+                b = in.read();
+
+                if (b < 0)
+                {
+                    throw new EOFException();
+                }
+
+                result |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            // Undo the zigzag encoding
+            return (result >>> 1) ^ -(result & 1);
+        }
+    }
+
+    private static int putVarLong(byte[] out, int position, long value)
+    {
+        // Zigzag encode so small negative deltas stay small
+        long v = (value << 1) ^ (value >> 63);
+
+        while ((v & ~0x7fL) != 0)
+        {
+            out[position++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+
+        out[position++] = (byte) v;
+
+        return position;
+    }
+}
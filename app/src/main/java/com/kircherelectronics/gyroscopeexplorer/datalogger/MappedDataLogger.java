@@ -0,0 +1,176 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Writes the {@link BinaryLogFormat} straight into memory mapped segments of
+ * the log file, so appending a record is a memory copy rather than a system
+ * call. The file is grown one preallocated segment at a time and truncated to
+ * the length actually written when the log is closed. If it is never closed
+ * the zeroed tail is left behind, which readers of the format skip.
+ */
+public class MappedDataLogger implements DataLoggerInterface
+{
+    // About a minute of records at 1 kHz per segment
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // Offset in the file of the start of the mapped segment
+    private long segmentOffset;
+    private boolean headersSet;
+    private File file;
+    private Context context;
+
+    private String mode;
+    private int samplingPeriodUs;
+
+    private float[] values = new float[3];
+
+    public MappedDataLogger(Context context, File file, String mode, int samplingPeriodUs)
+    {
+        this.context = context;
+        this.file = file;
+        this.mode = mode;
+        this.samplingPeriodUs = samplingPeriodUs;
+
+        try
+        {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            map(0);
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        headersSet = false;
+    }
+
+    /**
+     * The column names are fixed by the format, so this writes the binary
+     * header with the sensor mode and rate instead.
+     */
+    public void setHeaders(Iterable<String> headers) throws IllegalStateException
+    {
+        if (headersSet || buffer == null) {
+            throw new IllegalStateException("Headers already exist!");
+        }
+
+        BinaryLogFormat.writeHeader(buffer, mode, samplingPeriodUs, System.currentTimeMillis());
+        headersSet = true;
+    }
+
+    public void addRow(Iterable<String> values) throws IllegalStateException
+    {
+        Iterator<String> iterator = values.iterator();
+        long timestamp = (long) (Double.parseDouble(iterator.next()) * 1000000000L);
+
+        for (int i = 0; i < this.values.length; i++)
+        {
+            this.values[i] = Float.parseFloat(iterator.next());
+        }
+
+        addRow(timestamp, this.values);
+    }
+
+    public void addRow(long timestamp, float[] values) throws IllegalStateException
+    {
+        if(headersSet)
+        {
+            if (buffer.remaining() < BinaryLogFormat.RECORD_SIZE)
+            {
+                try
+                {
+                    map(segmentOffset + buffer.position());
+                } catch (IOException e)
+                {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+
+            BinaryLogFormat.writeRecord(buffer, timestamp, values);
+        }
+        else
+        {
+            throw new IllegalStateException("Headers do not exist!");
+        }
+    }
+
+    public long getSize()
+    {
+        // Not the length of the file, which grows a whole segment at a time
+        return buffer != null ? segmentOffset + buffer.position() : 0;
+    }
+
+    public void flushIfDue(long now)
+    {
+        // Rows are written straight to the mapping
+    }
+
+    public String writeToFile()
+    {
+        try {
+            long length = segmentOffset + buffer.position();
+            buffer.force();
+            buffer = null;
+            // Drop the unused tail of the last preallocated segment
+            channel.truncate(length);
+            channel.force(true);
+            channel.close();
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(file)));
+
+        return file.getPath();
+    }
+
+    /**
+     * Map the next segment of the file, growing the file to fit it.
+     *
+     * @param offset the offset in the file the segment starts at.
+     */
+    private void map(long offset) throws IOException
+    {
+        if (buffer != null)
+        {
+            // Write back the finished segment before moving on to the next one
+            buffer.force();
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, offset, SEGMENT_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        segmentOffset = offset;
+    }
+}
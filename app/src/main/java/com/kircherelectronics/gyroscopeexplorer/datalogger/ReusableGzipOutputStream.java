@@ -0,0 +1,168 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Writes a gzip stream like {@link java.util.zip.GZIPOutputStream}, but with
+ * a {@link Deflater} and output buffer supplied by the caller. The deflater is
+ * reset rather than released when the stream is closed, so one deflater and
+ * buffer can be reused for every log file and segment written by a thread.
+ */
+public class ReusableGzipOutputStream extends FilterOutputStream
+{
+    private static final byte[] HEADER = {
+            (byte) 0x1f, (byte) 0x8b, // Magic
+            Deflater.DEFLATED,        // Compression method
+            0,                        // Flags
+            0, 0, 0, 0,               // Modification time
+            0,                        // Extra flags
+            (byte) 0xff               // Operating system (unknown)
+    };
+
+    private final Deflater deflater;
+    private final byte[] buffer;
+    private final byte[] single = new byte[1];
+    private final CRC32 crc = new CRC32();
+
+    private boolean finished = false;
+
+    /**
+     * Create a new instance.
+     *
+     * @param out      the stream to write the compressed data to.
+     * @param deflater a deflater created with {@code nowrap} set to true.
+     * @param buffer   the buffer used to drain the deflater.
+     */
+    public ReusableGzipOutputStream(OutputStream out, Deflater deflater, byte[] buffer) throws IOException
+    {
+        super(out);
+
+        this.deflater = deflater;
+        this.buffer = buffer;
+
+        deflater.reset();
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream is finished!");
+        }
+
+        crc.update(b, off, len);
+        deflater.setInput(b, off, len);
+
+        while (!deflater.needsInput())
+        {
+            deflate();
+        }
+    }
+
+    /**
+     * Compress all the input so far and write it out, ending on a byte
+     * boundary so everything written can be decompressed without the rest of
+     * the stream. Each call costs a few bytes and some compression.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void syncFlush() throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream is finished!");
+        }
+
+        int length;
+
+        // A full buffer may have left more to drain
+        do
+        {
+            length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, length);
+        } while (length == buffer.length);
+
+        out.flush();
+    }
+
+    /**
+     * Compress the remaining input and write the gzip trailer without closing
+     * the underlying stream.
+     */
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+
+        deflater.finish();
+
+        while (!deflater.finished())
+        {
+            deflate();
+        }
+
+        writeInt((int) crc.getValue());
+        writeInt((int) deflater.getBytesRead());
+
+        deflater.reset();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        finish();
+        out.close();
+    }
+
+    private void deflate() throws IOException
+    {
+        int length = deflater.deflate(buffer, 0, buffer.length);
+
+        if (length > 0)
+        {
+            out.write(buffer, 0, length);
+        }
+    }
+
+    private void writeInt(int value) throws IOException
+    {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,157 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A bounded single-producer/single-consumer queue of rotation samples. The
+ * sensor thread offers every sample exactly once and the logging thread
+ * polls them in order. Samples are stored in preallocated primitive arrays,
+ * so neither side allocates. If the consumer falls behind and the queue is
+ * full, new samples are dropped and counted rather than blocking the sensor
+ * thread.
+ */
+public class SampleQueue
+{
+    private static final int AXES = 3;
+
+    private final int capacity;
+    private final int mask;
+
+    private final long[] timestamps;
+    private final float[] values;
+
+    // Index of the next slot to read, only written by the consumer.
+    private volatile long head = 0;
+    // Index of the next slot to write, only written by the producer.
+    private volatile long tail = 0;
+
+    private volatile long dropped = 0;
+
+    /**
+     * Create a new queue.
+     *
+     * @param capacity the maximum number of samples held, rounded up to a
+     *                 power of two.
+     */
+    public SampleQueue(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.values = new float[size * AXES];
+    }
+
+    /**
+     * Add a sample to the queue. Must only be called from the producer
+     * thread.
+     *
+     * @param timestamp the timestamp of the sample in nanoseconds.
+     * @param rotation  the x, y and z values of the sample.
+     * @return false if the queue was full and the sample was dropped.
+     */
+    public boolean offer(long timestamp, float[] rotation)
+    {
+        long t = tail;
+
+        if (t - head >= capacity)
+        {
+            dropped++;
+            return false;
+        }
+
+        int index = (int) (t & mask);
+        timestamps[index] = timestamp;
+        System.arraycopy(rotation, 0, values, index * AXES, AXES);
+
+        // Publish the slot to the consumer.
+        tail = t + 1;
+
+        return true;
+    }
+
+    /**
+     * Remove the oldest sample from the queue. Must only be called from the
+     * consumer thread.
+     *
+     * @param timestamp receives the timestamp of the sample at index 0.
+     * @param rotation  receives the x, y and z values of the sample.
+     * @return false if the queue was empty.
+     */
+    public boolean poll(long[] timestamp, float[] rotation)
+    {
+        long h = head;
+
+        if (h >= tail)
+        {
+            return false;
+        }
+
+        int index = (int) (h & mask);
+        timestamp[0] = timestamps[index];
+        System.arraycopy(values, index * AXES, rotation, 0, AXES);
+
+        // Release the slot back to the producer.
+        head = h + 1;
+
+        return true;
+    }
+
+    public boolean isEmpty()
+    {
+        return head >= tail;
+    }
+
+    public int size()
+    {
+        return (int) (tail - head);
+    }
+
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the number of samples dropped because the queue was full.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Empty the queue and reset the drop counter. Must only be called while
+     * neither the producer nor the consumer are using the queue.
+     */
+    public void clear()
+    {
+        head = 0;
+        tail = 0;
+        dropped = 0;
+    }
+}
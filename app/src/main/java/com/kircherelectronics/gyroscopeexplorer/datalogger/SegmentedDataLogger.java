@@ -0,0 +1,221 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Splits a log session into segments that roll over at a maximum size or
+ * duration. Each segment is written by its own {@link DataLoggerInterface}
+ * and is synced and announced to the media scanner as soon as it is closed,
+ * so a crash can only cost the segment being written. The closed segments of
+ * a session are listed in a manifest file next to them.
+ */
+public class SegmentedDataLogger implements DataLoggerInterface
+{
+    /**
+     * Creates the logger for each segment.
+     */
+    public interface Factory
+    {
+        DataLoggerInterface create(File file);
+    }
+
+    public static final String MANIFEST_EXTENSION = ".manifest";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Context context;
+    private final Factory factory;
+    private final File directory;
+    private final String name;
+    private final String extension;
+    private final File manifest;
+
+    private final long maxSize;
+    private final long maxDuration;
+
+    private Iterable<String> headers;
+    private boolean headersSet = false;
+
+    private DataLoggerInterface segment;
+    private File segmentFile;
+    private int segmentIndex = 0;
+    private long segmentStart = -1;
+    // The bytes logged to the closed segments
+    private long closedSize = 0;
+
+    /**
+     * Create a new instance.
+     *
+     * @param context     the context used to notify the media scanner.
+     * @param directory   the directory the segments are written to.
+     * @param name        the name of the session, segments are numbered after it.
+     * @param extension   the file extension of the segments.
+     * @param factory     creates the logger for each segment.
+     * @param maxSize     the size in bytes at which a segment rolls over, before
+     *                    any compression, 0 for no limit.
+     * @param maxDuration the duration in nanoseconds at which a segment rolls over, 0 for no limit.
+     */
+    public SegmentedDataLogger(Context context, File directory, String name, String extension, Factory factory,
+                               long maxSize, long maxDuration)
+    {
+        this.context = context;
+        this.directory = directory;
+        this.name = name;
+        this.extension = extension;
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxDuration = maxDuration;
+
+        manifest = new File(directory, name + MANIFEST_EXTENSION);
+
+        openSegment();
+    }
+
+    public void setHeaders(Iterable<String> headers) throws IllegalStateException
+    {
+        if (headersSet) {
+            throw new IllegalStateException("Headers already exist!");
+        }
+
+        this.headers = headers;
+        headersSet = true;
+        segment.setHeaders(headers);
+    }
+
+    public void addRow(Iterable<String> values) throws IllegalStateException
+    {
+        // The first value is the timestamp in seconds
+        rollSegmentIfFull((long) (Double.parseDouble(values.iterator().next()) * 1000000000L));
+
+        segment.addRow(values);
+    }
+
+    public void addRow(long timestamp, float[] values) throws IllegalStateException
+    {
+        rollSegmentIfFull(timestamp);
+
+        segment.addRow(timestamp, values);
+    }
+
+    public long getSize()
+    {
+        return closedSize + segment.getSize();
+    }
+
+    public void flushIfDue(long now)
+    {
+        segment.flushIfDue(now);
+    }
+
+    /**
+     * Close the last segment.
+     *
+     * @return the path of the session manifest.
+     */
+    public String writeToFile()
+    {
+        closeSegment();
+
+        context.sendBroadcast(new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE, Uri.fromFile(manifest)));
+
+        return manifest.getPath();
+    }
+
+    /**
+     * Start a new segment before a row that would take the current one past
+     * the maximum duration, or once the current one has reached the maximum
+     * size. A segment always gets at least one row.
+     */
+    private void rollSegmentIfFull(long timestamp)
+    {
+        if (segmentStart < 0)
+        {
+            segmentStart = timestamp;
+        }
+        else if ((maxDuration > 0 && timestamp - segmentStart >= maxDuration)
+                || (maxSize > 0 && segment.getSize() >= maxSize))
+        {
+            rollSegment();
+            segmentStart = timestamp;
+        }
+    }
+
+    private void rollSegment()
+    {
+        closeSegment();
+        openSegment();
+
+        if (headersSet)
+        {
+            segment.setHeaders(headers);
+        }
+    }
+
+    private void openSegment()
+    {
+        segmentIndex++;
+        segmentFile = new File(directory, String.format(Locale.US, "%s-%03d%s", name, segmentIndex, extension));
+        segment = factory.create(segmentFile);
+    }
+
+    private void closeSegment()
+    {
+        closedSize += segment.getSize();
+
+        // Syncs the segment and notifies the media scanner
+        segment.writeToFile();
+
+        appendToManifest(segmentFile.getName());
+    }
+
+    private void appendToManifest(String line)
+    {
+        FileOutputStream outputStream = null;
+
+        try
+        {
+            outputStream = new FileOutputStream(manifest, true);
+            outputStream.write((line + "\n").getBytes(UTF_8));
+            outputStream.getFD().sync();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        } finally
+        {
+            if (outputStream != null)
+            {
+                try
+                {
+                    outputStream.close();
+                } catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.kircherelectronics.gyroscopeexplorer.filter;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Estimates the bias of the gyroscope while the device is running, and
+ * removes it from the rates.
+ *
+ * A device lying still measures nothing but the bias and noise. The mean and
+ * variance of each axis are tracked as exponentially weighted averages, and
+ * once the variance has stayed low for {@link #STATIONARY_TIME} the bias is
+ * pulled towards the mean. The state is a handful of numbers per axis, so
+ * each sample costs the same however long the device has been still.
+ *
+ * Not thread safe.
+ */
+public class GyroscopeBiasEstimator
+{
+    private static final int AXES = 3;
+
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    // The time constant of the mean and variance in seconds
+    private static final float DETECTION_TIME_CONSTANT = 0.25f;
+    // The time constant the bias follows the mean with while still, in seconds
+    private static final float BIAS_TIME_CONSTANT = 2.0f;
+
+    // Still means the rates vary less than this, (0.02 rad/s)^2...
+    private static final float STATIONARY_VARIANCE = 0.0004f;
+    // ...and are no larger than any real bias, or once the bias has been
+    // confirmed no further from it than it wanders, so a slow steady turn
+    // isn't mistaken for one...
+    private static final float MAX_BIAS = 0.05f;
+    private static final float MAX_BIAS_CHANGE = 0.01f;
+    // ...for this long, in nanoseconds
+    private static final long STATIONARY_TIME = 1000000000L;
+
+    // The time spent still, in nanoseconds, before the bias is confirmed
+    private static final long CALIBRATION_TIME = 3000000000L;
+
+    // Longer gaps between samples mean the sensor was paused
+    private static final float MAX_DT = 0.5f;
+
+    private final float[] mean = new float[AXES];
+    private final float[] variance = new float[AXES];
+    private final float[] bias = new float[AXES];
+
+    private long lastTimestamp = 0;
+    private long stationarySince = -1;
+    private long calibratedTime = 0;
+    private boolean calibrated = false;
+    // Estimated from the rates since the last reset, not only set
+    private boolean confirmed = false;
+    private boolean stationary = false;
+
+    /**
+     * Add a sample and remove the bias from it.
+     *
+     * @param rates     the x, y and z rates of the device in rad/s.
+     * @param timestamp the time of the sample in nanoseconds.
+     * @param output    receives the rates less the bias, may be rates.
+     * @return output.
+     */
+    public float[] filter(float[] rates, long timestamp, float[] output)
+    {
+        float dt = (timestamp - lastTimestamp) * NS2S;
+
+        if (lastTimestamp == 0 || dt <= 0 || dt > MAX_DT)
+        {
+            restartDetection(rates);
+        }
+        else
+        {
+            update(rates, timestamp, dt);
+        }
+
+        lastTimestamp = timestamp;
+
+        for (int i = 0; i < AXES; i++)
+        {
+            output[i] = rates[i] - bias[i];
+        }
+
+        return output;
+    }
+
+    /**
+     * @return true if the device has been still long enough for the bias to
+     * be estimated.
+     */
+    public boolean isStationary()
+    {
+        return stationary;
+    }
+
+    /**
+     * @return true once the bias has been estimated over enough still time,
+     * or was set from an earlier estimate.
+     */
+    public boolean isCalibrated()
+    {
+        return calibrated;
+    }
+
+    /**
+     * @return true once the bias has been estimated over enough still time
+     * since the last reset, rather than only set from an earlier estimate.
+     */
+    public boolean isConfirmed()
+    {
+        return confirmed;
+    }
+
+    /**
+     * @param out receives the estimated x, y and z bias in rad/s.
+     */
+    public void getBias(float[] out)
+    {
+        System.arraycopy(bias, 0, out, 0, AXES);
+    }
+
+    /**
+     * Start from an earlier estimate, so the bias is right from the first
+     * sample instead of after the device has been still for a while. The
+     * estimate may have gone stale since, so it is corrected as freely as a
+     * bias found from scratch until it has been confirmed.
+     *
+     * @param bias the x, y and z bias in rad/s.
+     */
+    public void setBias(float[] bias)
+    {
+        System.arraycopy(bias, 0, this.bias, 0, AXES);
+        calibrated = true;
+    }
+
+    /**
+     * Forget the bias and start estimating it again.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < AXES; i++)
+        {
+            bias[i] = 0;
+        }
+
+        lastTimestamp = 0;
+        stationarySince = -1;
+        stationary = false;
+        calibratedTime = 0;
+        calibrated = false;
+        confirmed = false;
+    }
+
+    private void restartDetection(float[] rates)
+    {
+        for (int i = 0; i < AXES; i++)
+        {
+            mean[i] = rates[i];
+            // Not still until the variance has come down on its own
+            variance[i] = STATIONARY_VARIANCE;
+        }
+
+        stationarySince = -1;
+        stationary = false;
+    }
+
+    private void update(float[] rates, long timestamp, float dt)
+    {
+        float alpha = dt / (DETECTION_TIME_CONSTANT + dt);
+        boolean still = true;
+
+        for (int i = 0; i < AXES; i++)
+        {
+            float delta = rates[i] - mean[i];
+
+            mean[i] += alpha * delta;
+            variance[i] = (1 - alpha) * (variance[i] + alpha * delta * delta);
+
+            float offset = confirmed ? Math.abs(mean[i] - bias[i]) : Math.abs(mean[i]);
+
+            if (variance[i] >= STATIONARY_VARIANCE || offset >= (confirmed ? MAX_BIAS_CHANGE : MAX_BIAS))
+            {
+                still = false;
+            }
+        }
+
+        if (!still)
+        {
+            stationarySince = -1;
+            stationary = false;
+            return;
+        }
+
+        if (stationarySince < 0)
+        {
+            stationarySince = timestamp;
+        }
+
+        stationary = timestamp - stationarySince >= STATIONARY_TIME;
+
+        if (stationary)
+        {
+            float beta = dt / (BIAS_TIME_CONSTANT + dt);
+
+            for (int i = 0; i < AXES; i++)
+            {
+                bias[i] += beta * (mean[i] - bias[i]);
+            }
+
+            calibratedTime += (long) (dt / NS2S);
+
+            if (calibratedTime >= CALIBRATION_TIME)
+            {
+                calibrated = true;
+                confirmed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.kircherelectronics.gyroscopeexplorer.filter;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Averages the angles of the last time constant seconds of samples.
+ *
+ * The window is a circular buffer of primitives with a running sum, so each
+ * sample costs the same no matter how long the window is, and nothing is
+ * allocated once the buffer has grown to fit the window. The angles are
+ * averaged as unit vectors, the sums of their sines and cosines, so a window
+ * that spans the wrap from pi to -pi averages to pi rather than zero.
+ *
+ * Not thread safe, other than {@link #setTimeConstant(float)}.
+ */
+public class SlidingWindowMeanFilter
+{
+    private static final int AXES = 3;
+
+    // Enough for a second at 200 Hz before the buffer has to grow
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Sum the window again from scratch this often, so the rounding errors
+    // of adding and removing samples can't build up
+    private static final int RESUM_INTERVAL = 4096;
+
+    private volatile long timeConstantNanos;
+
+    private long[] timestamps;
+    // The sine and cosine of each axis, interleaved per sample
+    private double[] sines;
+    private double[] cosines;
+
+    private int head = 0;
+    private int size = 0;
+
+    private final double[] sumSin = new double[AXES];
+    private final double[] sumCos = new double[AXES];
+
+    private int sinceResum = 0;
+
+    public SlidingWindowMeanFilter()
+    {
+        this(0.5f);
+    }
+
+    public SlidingWindowMeanFilter(float timeConstant)
+    {
+        setTimeConstant(timeConstant);
+
+        timestamps = new long[INITIAL_CAPACITY];
+        sines = new double[INITIAL_CAPACITY * AXES];
+        cosines = new double[INITIAL_CAPACITY * AXES];
+    }
+
+    /**
+     * @param timeConstant the length of the window in seconds.
+     */
+    public void setTimeConstant(float timeConstant)
+    {
+        timeConstantNanos = (long) (timeConstant * 1000000000.0);
+    }
+
+    /**
+     * Add a sample and get the mean of the window.
+     *
+     * @param values    the x, y and z angles in radians.
+     * @param timestamp the time of the sample in nanoseconds.
+     * @param output    receives the mean angles in radians, may be values.
+     * @return output.
+     */
+    public float[] filter(float[] values, long timestamp, float[] output)
+    {
+        if (size > 0 && timestamp < timestamps[index(size - 1)])
+        {
+            // Time went backwards, the window means nothing any more
+            reset();
+        }
+
+        // Drop the samples that have left the window
+        long oldest = timestamp - timeConstantNanos;
+
+        while (size > 0 && timestamps[head] < oldest)
+        {
+            remove();
+        }
+
+        if (size == timestamps.length)
+        {
+            grow();
+        }
+
+        add(values, timestamp);
+
+        if (++sinceResum >= RESUM_INTERVAL)
+        {
+            resum();
+        }
+
+        for (int i = 0; i < AXES; i++)
+        {
+            output[i] = (float) Math.atan2(sumSin[i], sumCos[i]);
+        }
+
+        return output;
+    }
+
+    public void reset()
+    {
+        head = 0;
+        size = 0;
+
+        for (int i = 0; i < AXES; i++)
+        {
+            sumSin[i] = 0;
+            sumCos[i] = 0;
+        }
+
+        sinceResum = 0;
+    }
+
+    private int index(int i)
+    {
+        int index = head + i;
+
+        return index < timestamps.length ? index : index - timestamps.length;
+    }
+
+    private void add(float[] values, long timestamp)
+    {
+        int index = index(size);
+        int offset = index * AXES;
+
+        timestamps[index] = timestamp;
+
+        for (int i = 0; i < AXES; i++)
+        {
+            double sin = Math.sin(values[i]);
+            double cos = Math.cos(values[i]);
+
+            sines[offset + i] = sin;
+            cosines[offset + i] = cos;
+            sumSin[i] += sin;
+            sumCos[i] += cos;
+        }
+
+        size++;
+    }
+
+    private void remove()
+    {
+        int offset = head * AXES;
+
+        for (int i = 0; i < AXES; i++)
+        {
+            sumSin[i] -= sines[offset + i];
+            sumCos[i] -= cosines[offset + i];
+        }
+
+        head = index(1);
+        size--;
+    }
+
+    private void resum()
+    {
+        for (int i = 0; i < AXES; i++)
+        {
+            sumSin[i] = 0;
+            sumCos[i] = 0;
+        }
+
+        for (int j = 0; j < size; j++)
+        {
+            int offset = index(j) * AXES;
+
+            for (int i = 0; i < AXES; i++)
+            {
+                sumSin[i] += sines[offset + i];
+                sumCos[i] += cosines[offset + i];
+            }
+        }
+
+        sinceResum = 0;
+    }
+
+    /**
+     * Double the buffer, unwrapping the window to the start of it.
+     */
+    private void grow()
+    {
+        int capacity = timestamps.length * 2;
+
+        long[] newTimestamps = new long[capacity];
+        double[] newSines = new double[capacity * AXES];
+        double[] newCosines = new double[capacity * AXES];
+
+        for (int j = 0; j < size; j++)
+        {
+            int index = index(j);
+
+            newTimestamps[j] = timestamps[index];
+            System.arraycopy(sines, index * AXES, newSines, j * AXES, AXES);
+            System.arraycopy(cosines, index * AXES, newCosines, j * AXES, AXES);
+        }
+
+        timestamps = newTimestamps;
+        sines = newSines;
+        cosines = newCosines;
+        head = 0;
+    }
+}
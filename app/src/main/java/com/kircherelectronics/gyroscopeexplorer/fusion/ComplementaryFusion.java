@@ -0,0 +1,179 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A quaternion complementary filter. The gyroscope is integrated into the
+ * rotation, which is then pulled towards the rotation given by the
+ * accelerometer and magnetometer:
+ *
+ * rotation = alpha * gyroscope + (1 - alpha) * acceleration/magnetic
+ *
+ * where alpha = timeConstant / (timeConstant + dt). The gyroscope dominates
+ * over periods shorter than the time constant and the acceleration/magnetic
+ * rotation, which doesn't drift, over longer periods.
+ *
+ * Works on primitives and arrays allocated up front, so no sample allocates.
+ * Not thread safe, other than {@link #setTimeConstant(float)}.
+ */
+public class ComplementaryFusion implements OrientationFusion
+{
+    public static final float DEFAULT_TIME_CONSTANT = 0.5f;
+
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    private volatile float timeConstant;
+
+    private final float[] acceleration = new float[3];
+    private final float[] magnetic = new float[3];
+    private boolean hasAcceleration = false;
+    private boolean hasMagnetic = false;
+
+    // Set when a new acceleration or magnetic field arrives, so the rotation
+    // they give is only found again when it has changed
+    private boolean accelerationMagneticChanged = false;
+    private boolean hasAccelerationMagneticRotation = false;
+
+    // The rotations from the device frame to the world frame, w, x, y, z
+    private final float[] rotation = new float[4];
+    private final float[] accelerationMagneticRotation = new float[4];
+
+    private boolean initialized = false;
+    private long lastTimestamp = 0;
+
+    public ComplementaryFusion()
+    {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    public ComplementaryFusion(float timeConstant)
+    {
+        this.timeConstant = timeConstant;
+    }
+
+    /**
+     * @param timeConstant the period in seconds over which the gyroscope is
+     *                     trusted over the accelerometer and magnetometer.
+     */
+    public void setTimeConstant(float timeConstant)
+    {
+        this.timeConstant = timeConstant;
+    }
+
+    @Override
+    public void reset()
+    {
+        initialized = false;
+        hasAcceleration = false;
+        hasMagnetic = false;
+        accelerationMagneticChanged = false;
+        hasAccelerationMagneticRotation = false;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setOrientation(float[] orientation)
+    {
+        Quaternions.fromOrientation(orientation, rotation);
+        initialized = true;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setAcceleration(float[] values)
+    {
+        System.arraycopy(values, 0, acceleration, 0, 3);
+        hasAcceleration = true;
+        accelerationMagneticChanged = true;
+    }
+
+    @Override
+    public void setMagnetic(float[] values)
+    {
+        System.arraycopy(values, 0, magnetic, 0, 3);
+        hasMagnetic = true;
+        accelerationMagneticChanged = true;
+    }
+
+    @Override
+    public boolean setGyroscope(float[] rates, long timestamp, float[] orientation)
+    {
+        if (accelerationMagneticChanged)
+        {
+            hasAccelerationMagneticRotation = updateAccelerationMagneticRotation();
+            accelerationMagneticChanged = false;
+        }
+
+        boolean corrected = hasAccelerationMagneticRotation;
+
+        if (!initialized)
+        {
+            if (!corrected)
+            {
+                return false;
+            }
+
+            System.arraycopy(accelerationMagneticRotation, 0, rotation, 0, 4);
+            initialized = true;
+        }
+        else if (lastTimestamp != 0)
+        {
+            float dt = (timestamp - lastTimestamp) * NS2S;
+
+            Quaternions.integrate(rotation, rates[0], rates[1], rates[2], dt, rotation);
+
+            if (corrected)
+            {
+                blend(timeConstant / (timeConstant + dt));
+            }
+        }
+
+        lastTimestamp = timestamp;
+
+        Quaternions.toOrientation(rotation, orientation);
+
+        return true;
+    }
+
+    /**
+     * rotation = alpha * rotation + (1 - alpha) * accelerationMagneticRotation,
+     * normalized.
+     */
+    private void blend(float alpha)
+    {
+        float[] a = rotation;
+        float[] b = accelerationMagneticRotation;
+
+        float dot = a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+
+        // q and -q are the same rotation, blend towards the nearer one
+        float beta = dot < 0 ? alpha - 1 : 1 - alpha;
+
+        for (int i = 0; i < 4; i++)
+        {
+            a[i] = alpha * a[i] + beta * b[i];
+        }
+
+        Quaternions.normalize(a, a);
+    }
+
+    private boolean updateAccelerationMagneticRotation()
+    {
+        return hasAcceleration && hasMagnetic
+                && Quaternions.fromAccelerationMagnetic(acceleration, magnetic, accelerationMagneticRotation);
+    }
+}
@@ -0,0 +1,104 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The gyroscope alone, like FSensor's GyroscopeSensor: the rotation starts
+ * from the accelerometer and magnetometer and is only integrated from then
+ * on, so any bias left in the rates turns into drift.
+ *
+ * Not thread safe.
+ */
+public class GyroscopeIntegration implements OrientationFusion
+{
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    private final float[] acceleration = new float[3];
+    private final float[] magnetic = new float[3];
+    private boolean hasAcceleration = false;
+    private boolean hasMagnetic = false;
+
+    // The rotation from the device frame to the world frame, w, x, y, z
+    private final float[] rotation = new float[4];
+
+    private boolean initialized = false;
+    private long lastTimestamp = 0;
+
+    @Override
+    public void reset()
+    {
+        initialized = false;
+        hasAcceleration = false;
+        hasMagnetic = false;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setOrientation(float[] orientation)
+    {
+        Quaternions.fromOrientation(orientation, rotation);
+        initialized = true;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setAcceleration(float[] values)
+    {
+        if (!initialized)
+        {
+            System.arraycopy(values, 0, acceleration, 0, 3);
+            hasAcceleration = true;
+        }
+    }
+
+    @Override
+    public void setMagnetic(float[] values)
+    {
+        if (!initialized)
+        {
+            System.arraycopy(values, 0, magnetic, 0, 3);
+            hasMagnetic = true;
+        }
+    }
+
+    @Override
+    public boolean setGyroscope(float[] rates, long timestamp, float[] orientation)
+    {
+        if (!initialized)
+        {
+            if (!hasAcceleration || !hasMagnetic
+                    || !Quaternions.fromAccelerationMagnetic(acceleration, magnetic, rotation))
+            {
+                return false;
+            }
+
+            initialized = true;
+        }
+        else if (lastTimestamp != 0)
+        {
+            float dt = (timestamp - lastTimestamp) * NS2S;
+
+            Quaternions.integrate(rotation, rates[0], rates[1], rates[2], dt, rotation);
+        }
+
+        lastTimestamp = timestamp;
+
+        Quaternions.toOrientation(rotation, orientation);
+
+        return true;
+    }
+}
@@ -0,0 +1,435 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A quaternion extended Kalman filter with the gyroscope bias in the state,
+ * seven states in all: w, x, y, z of the rotation from the device frame to
+ * the world frame and the x, y, z bias of the gyroscope in rad/s.
+ *
+ * The gyroscope drives the prediction and the rotation given by the
+ * accelerometer and magnetometer is the measurement, each time either of
+ * them changes. Since the measurement is the rotation itself, H = [I 0] and
+ * the update only needs the 4x4 innovation covariance, which is solved with
+ * a Cholesky decomposition.
+ *
+ * The matrices are fixed size, so every product is written out by hand on
+ * flat arrays allocated up front rather than going through a general matrix
+ * library, and no sample allocates. Not thread safe.
+ */
+public class KalmanFusion implements OrientationFusion
+{
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    private static final int STATES = 7;
+
+    // Longer gaps between gyroscope samples mean the sensor was paused, and
+    // the rates can't be held over them
+    private static final float MAX_DT = 0.5f;
+
+    // The variance of the gyroscope rates in (rad/s)^2
+    public static final float DEFAULT_GYROSCOPE_NOISE = 0.0025f;
+    // The variance of the bias random walk in (rad/s)^2 per second
+    public static final float DEFAULT_BIAS_NOISE = 0.000001f;
+    // The variance of each component of the acceleration/magnetic rotation
+    public static final float DEFAULT_MEASUREMENT_NOISE = 0.001f;
+
+    private static final float INITIAL_ROTATION_VARIANCE = 0.01f;
+    private static final float INITIAL_BIAS_VARIANCE = 0.0001f;
+
+    private final float gyroscopeNoise;
+    private final float biasNoise;
+    private final float measurementNoise;
+
+    private final float[] acceleration = new float[3];
+    private final float[] magnetic = new float[3];
+    private boolean hasAcceleration = false;
+    private boolean hasMagnetic = false;
+    private boolean accelerationMagneticChanged = false;
+
+    private final float[] rotation = new float[4];
+    private final float[] bias = new float[3];
+    private final float[] measurement = new float[4];
+
+    // Row major. P is the 7x7 state covariance, G the top four rows of the
+    // state transition [A B], T holds G * P and K the 7x4 gain.
+    private final float[] p = new float[STATES * STATES];
+    private final float[] g = new float[4 * STATES];
+    private final float[] t = new float[4 * STATES];
+    private final float[] k = new float[STATES * 4];
+
+    private boolean initialized = false;
+    private long lastTimestamp = 0;
+
+    public KalmanFusion()
+    {
+        this(DEFAULT_GYROSCOPE_NOISE, DEFAULT_BIAS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * @param gyroscopeNoise   the variance of the gyroscope rates in (rad/s)^2.
+     * @param biasNoise        how fast the gyroscope bias wanders, as a
+     *                         variance in (rad/s)^2 per second.
+     * @param measurementNoise the variance of each component of the rotation
+     *                         given by the accelerometer and magnetometer.
+     */
+    public KalmanFusion(float gyroscopeNoise, float biasNoise, float measurementNoise)
+    {
+        this.gyroscopeNoise = gyroscopeNoise;
+        this.biasNoise = biasNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public void reset()
+    {
+        initialized = false;
+        hasAcceleration = false;
+        hasMagnetic = false;
+        accelerationMagneticChanged = false;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setOrientation(float[] orientation)
+    {
+        Quaternions.fromOrientation(orientation, measurement);
+        initialize();
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public void setAcceleration(float[] values)
+    {
+        System.arraycopy(values, 0, acceleration, 0, 3);
+        hasAcceleration = true;
+        accelerationMagneticChanged = true;
+    }
+
+    @Override
+    public void setMagnetic(float[] values)
+    {
+        System.arraycopy(values, 0, magnetic, 0, 3);
+        hasMagnetic = true;
+        accelerationMagneticChanged = true;
+    }
+
+    @Override
+    public boolean setGyroscope(float[] rates, long timestamp, float[] orientation)
+    {
+        boolean measured = false;
+
+        if (accelerationMagneticChanged)
+        {
+            measured = hasAcceleration && hasMagnetic
+                    && Quaternions.fromAccelerationMagnetic(acceleration, magnetic, measurement);
+            accelerationMagneticChanged = false;
+        }
+
+        if (!initialized)
+        {
+            if (!measured)
+            {
+                return false;
+            }
+
+            initialize();
+        }
+        else
+        {
+            float dt = (timestamp - lastTimestamp) * NS2S;
+
+            if (lastTimestamp != 0 && dt > 0 && dt <= MAX_DT)
+            {
+                predict(rates, dt);
+            }
+
+            if (measured)
+            {
+                update();
+            }
+        }
+
+        lastTimestamp = timestamp;
+
+        Quaternions.toOrientation(rotation, orientation);
+
+        return true;
+    }
+
+    /**
+     * @param out receives the estimated x, y and z bias of the gyroscope in
+     *            rad/s.
+     */
+    public void getBias(float[] out)
+    {
+        System.arraycopy(bias, 0, out, 0, 3);
+    }
+
+    private void initialize()
+    {
+        System.arraycopy(measurement, 0, rotation, 0, 4);
+
+        bias[0] = 0;
+        bias[1] = 0;
+        bias[2] = 0;
+
+        for (int i = 0; i < p.length; i++)
+        {
+            p[i] = 0;
+        }
+
+        p[0] = INITIAL_ROTATION_VARIANCE;
+        p[8] = INITIAL_ROTATION_VARIANCE;
+        p[16] = INITIAL_ROTATION_VARIANCE;
+        p[24] = INITIAL_ROTATION_VARIANCE;
+        p[32] = INITIAL_BIAS_VARIANCE;
+        p[40] = INITIAL_BIAS_VARIANCE;
+        p[48] = INITIAL_BIAS_VARIANCE;
+
+        initialized = true;
+    }
+
+    /**
+     * x = f(x, rates), P = F * P * F^T + Q with F = [A B; 0 I], where
+     * rotation = rotation * delta(rates - bias) and A is the matrix of that
+     * product, B the change of the rotation with the bias.
+     */
+    private void predict(float[] rates, float dt)
+    {
+        float wx = rates[0] - bias[0];
+        float wy = rates[1] - bias[1];
+        float wz = rates[2] - bias[2];
+
+        float omegaMagnitude = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+        float halfDt = dt / 2.0f;
+
+        // sin(|w| * dt / 2) / |w|, which tends to dt / 2
+        float scale = omegaMagnitude > 0.000000001f
+                ? (float) Math.sin(omegaMagnitude * halfDt) / omegaMagnitude : halfDt;
+
+        float d0 = (float) Math.cos(omegaMagnitude * halfDt);
+        float d1 = scale * wx;
+        float d2 = scale * wy;
+        float d3 = scale * wz;
+
+        float q0 = rotation[0], q1 = rotation[1], q2 = rotation[2], q3 = rotation[3];
+
+        float[] g = this.g;
+
+        // A, the matrix of q * delta
+        g[0] = d0;   g[1] = -d1;  g[2] = -d2;  g[3] = -d3;
+        g[7] = d1;   g[8] = d0;   g[9] = d3;   g[10] = -d2;
+        g[14] = d2;  g[15] = -d3; g[16] = d0;  g[17] = d1;
+        g[21] = d3;  g[22] = d2;  g[23] = -d1; g[24] = d0;
+
+        // B = -dt / 2 * [q * (0, e_x), q * (0, e_y), q * (0, e_z)]
+        g[4] = halfDt * q1;   g[5] = halfDt * q2;   g[6] = halfDt * q3;
+        g[11] = -halfDt * q0; g[12] = halfDt * q3;  g[13] = -halfDt * q2;
+        g[18] = -halfDt * q3; g[19] = -halfDt * q0; g[20] = halfDt * q1;
+        g[25] = halfDt * q2;  g[26] = -halfDt * q1; g[27] = -halfDt * q0;
+
+        rotation[0] = q0 * d0 - q1 * d1 - q2 * d2 - q3 * d3;
+        rotation[1] = q0 * d1 + q1 * d0 + q2 * d3 - q3 * d2;
+        rotation[2] = q0 * d2 - q1 * d3 + q2 * d0 + q3 * d1;
+        rotation[3] = q0 * d3 + q1 * d2 - q2 * d1 + q3 * d0;
+
+        Quaternions.normalize(rotation, rotation);
+
+        float[] p = this.p;
+        float[] t = this.t;
+
+        // T = G * P
+        for (int r = 0; r < 4; r++)
+        {
+            int row = r * STATES;
+            float g0 = g[row], g1 = g[row + 1], g2 = g[row + 2], g3 = g[row + 3];
+            float g4 = g[row + 4], g5 = g[row + 5], g6 = g[row + 6];
+
+            for (int c = 0; c < STATES; c++)
+            {
+                t[row + c] = g0 * p[c] + g1 * p[7 + c] + g2 * p[14 + c] + g3 * p[21 + c]
+                        + g4 * p[28 + c] + g5 * p[35 + c] + g6 * p[42 + c];
+            }
+        }
+
+        // The gyroscope noise only moves the rotation across the unit sphere:
+        // Q = noise * dt^2 / 4 * (I - q * q^T)
+        float rotationNoise = gyroscopeNoise * halfDt * halfDt;
+        q0 = rotation[0];
+        q1 = rotation[1];
+        q2 = rotation[2];
+        q3 = rotation[3];
+
+        // P[rotation, rotation] = T * G^T + Q, symmetric
+        for (int r = 0; r < 4; r++)
+        {
+            int row = r * STATES;
+            float t0 = t[row], t1 = t[row + 1], t2 = t[row + 2], t3 = t[row + 3];
+            float t4 = t[row + 4], t5 = t[row + 5], t6 = t[row + 6];
+            float qr = rotation[r];
+
+            for (int s = r; s < 4; s++)
+            {
+                int other = s * STATES;
+
+                float value = t0 * g[other] + t1 * g[other + 1] + t2 * g[other + 2] + t3 * g[other + 3]
+                        + t4 * g[other + 4] + t5 * g[other + 5] + t6 * g[other + 6]
+                        - rotationNoise * qr * rotation[s];
+
+                if (s == r)
+                {
+                    value += rotationNoise;
+                }
+
+                p[row + s] = value;
+                p[other + r] = value;
+            }
+
+            // P[rotation, bias] = T * [0 I]^T
+            p[row + 4] = t4;
+            p[row + 5] = t5;
+            p[row + 6] = t6;
+            p[28 + r] = t4;
+            p[35 + r] = t5;
+            p[42 + r] = t6;
+        }
+
+        // P[bias, bias] is carried over, plus its random walk
+        float walk = biasNoise * dt;
+        p[32] += walk;
+        p[40] += walk;
+        p[48] += walk;
+    }
+
+    /**
+     * K = P * H^T * S^-1, x = x + K * (z - q), P = P - K * H * P, with
+     * H = [I 0] and S = P[rotation, rotation] + R.
+     */
+    private void update()
+    {
+        float[] p = this.p;
+        float[] k = this.k;
+        float[] z = measurement;
+
+        // q and -q are the same rotation, measure the nearer one
+        if (z[0] * rotation[0] + z[1] * rotation[1] + z[2] * rotation[2] + z[3] * rotation[3] < 0)
+        {
+            z[0] = -z[0];
+            z[1] = -z[1];
+            z[2] = -z[2];
+            z[3] = -z[3];
+        }
+
+        float r = measurementNoise;
+
+        // S = L * L^T
+        float s00 = p[0] + r, s10 = p[7], s20 = p[14], s30 = p[21];
+        float s11 = p[8] + r, s21 = p[15], s31 = p[22];
+        float s22 = p[16] + r, s32 = p[23];
+        float s33 = p[24] + r;
+
+        float l00 = (float) Math.sqrt(s00);
+        float i00 = 1.0f / l00;
+        float l10 = s10 * i00;
+        float l20 = s20 * i00;
+        float l30 = s30 * i00;
+
+        float d11 = s11 - l10 * l10;
+        if (d11 <= 0)
+        {
+            return;
+        }
+        float i11 = 1.0f / (float) Math.sqrt(d11);
+        float l21 = (s21 - l20 * l10) * i11;
+        float l31 = (s31 - l30 * l10) * i11;
+
+        float d22 = s22 - l20 * l20 - l21 * l21;
+        if (d22 <= 0)
+        {
+            return;
+        }
+        float i22 = 1.0f / (float) Math.sqrt(d22);
+        float l32 = (s32 - l30 * l20 - l31 * l21) * i22;
+
+        float d33 = s33 - l30 * l30 - l31 * l31 - l32 * l32;
+        if (d33 <= 0)
+        {
+            return;
+        }
+        float i33 = 1.0f / (float) Math.sqrt(d33);
+
+        float y0 = z[0] - rotation[0];
+        float y1 = z[1] - rotation[1];
+        float y2 = z[2] - rotation[2];
+        float y3 = z[3] - rotation[3];
+
+        // Each row of K solves S * k = P[i, rotation], S being symmetric
+        for (int i = 0; i < STATES; i++)
+        {
+            int row = i * STATES;
+
+            float f0 = p[row] * i00;
+            float f1 = (p[row + 1] - l10 * f0) * i11;
+            float f2 = (p[row + 2] - l20 * f0 - l21 * f1) * i22;
+            float f3 = (p[row + 3] - l30 * f0 - l31 * f1 - l32 * f2) * i33;
+
+            float k3 = f3 * i33;
+            float k2 = (f2 - l32 * k3) * i22;
+            float k1 = (f1 - l21 * k2 - l31 * k3) * i11;
+            float k0 = (f0 - l10 * k1 - l20 * k2 - l30 * k3) * i00;
+
+            int gain = i * 4;
+            k[gain] = k0;
+            k[gain + 1] = k1;
+            k[gain + 2] = k2;
+            k[gain + 3] = k3;
+
+            float correction = k0 * y0 + k1 * y1 + k2 * y2 + k3 * y3;
+
+            if (i < 4)
+            {
+                rotation[i] += correction;
+            }
+            else
+            {
+                bias[i - 4] += correction;
+            }
+        }
+
+        Quaternions.normalize(rotation, rotation);
+
+        // H * P is the first four rows of P, which are overwritten below
+        float[] hp = t;
+        System.arraycopy(p, 0, hp, 0, 4 * STATES);
+
+        for (int i = 0; i < STATES; i++)
+        {
+            int gain = i * 4;
+            float k0 = k[gain], k1 = k[gain + 1], k2 = k[gain + 2], k3 = k[gain + 3];
+
+            for (int j = i; j < STATES; j++)
+            {
+                float value = p[i * STATES + j]
+                        - (k0 * hp[j] + k1 * hp[7 + j] + k2 * hp[14 + j] + k3 * hp[21 + j]);
+
+                p[i * STATES + j] = value;
+                p[j * STATES + i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Fuses the gyroscope with the accelerometer and magnetometer into the
+ * orientation of the device. The latest acceleration and magnetic field are
+ * held until the next gyroscope sample, which produces the orientation.
+ */
+public interface OrientationFusion
+{
+    /**
+     * Start over from the next acceleration/magnetic rotation.
+     */
+    void reset();
+
+    /**
+     * Carry on from an orientation instead of starting over from the
+     * acceleration/magnetic rotation, the next gyroscope sample is the first
+     * one integrated.
+     *
+     * @param orientation the azimuth, pitch and roll in radians, as returned
+     *                    by SensorManager.getOrientation().
+     */
+    void setOrientation(float[] orientation);
+
+    /**
+     * @param values the acceleration of the device in m/s^2, including gravity.
+     */
+    void setAcceleration(float[] values);
+
+    /**
+     * @param values the magnetic field around the device in uT.
+     */
+    void setMagnetic(float[] values);
+
+    /**
+     * Integrate a gyroscope sample and fuse it with the latest acceleration
+     * and magnetic field.
+     *
+     * @param rates       the x, y and z rates of the device in rad/s.
+     * @param timestamp   the time of the sample in nanoseconds.
+     * @param orientation receives the fused azimuth, pitch and roll in radians.
+     * @return false until the fusion has an acceleration/magnetic rotation
+     * or an orientation to start from, in which case orientation is left
+     * alone.
+     */
+    boolean setGyroscope(float[] rates, long timestamp, float[] orientation);
+}
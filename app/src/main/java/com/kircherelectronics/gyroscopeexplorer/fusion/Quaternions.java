@@ -0,0 +1,317 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Quaternion math for integrating the gyroscope, on float arrays owned by the
+ * caller so nothing is allocated at the sensor rate.
+ *
+ * Quaternions are stored w, x, y, z, the same order as
+ * {@link android.hardware.SensorManager#getQuaternionFromVector}. They
+ * describe the rotation from the device frame to the world frame, so the
+ * rotation matrix of a quaternion is the one
+ * {@link android.hardware.SensorManager#getRotationMatrixFromVector} returns
+ * and the orientation is the azimuth, pitch and roll
+ * {@link android.hardware.SensorManager#getOrientation} returns. The output
+ * array may be one of the inputs in every method.
+ */
+public final class Quaternions
+{
+    // Below this rotation rate the axis of rotation is meaningless
+    private static final float EPSILON = 0.000000001f;
+
+    private static final float GRAVITY_EARTH = 9.80665f;
+    private static final float MIN_GRAVITY_SQUARED = 0.01f * GRAVITY_EARTH * GRAVITY_EARTH;
+
+    private Quaternions()
+    {
+    }
+
+    /**
+     * Set the identity rotation.
+     */
+    public static void identity(float[] q)
+    {
+        q[0] = 1;
+        q[1] = 0;
+        q[2] = 0;
+        q[3] = 0;
+    }
+
+    /**
+     * out = a * b, the rotation b followed by a.
+     */
+    public static void multiply(float[] a, float[] b, float[] out)
+    {
+        float aw = a[0], ax = a[1], ay = a[2], az = a[3];
+        float bw = b[0], bx = b[1], by = b[2], bz = b[3];
+
+        out[0] = aw * bw - ax * bx - ay * by - az * bz;
+        out[1] = aw * bx + ax * bw + ay * bz - az * by;
+        out[2] = aw * by - ax * bz + ay * bw + az * bx;
+        out[3] = aw * bz + ax * by - ay * bx + az * bw;
+    }
+
+    /**
+     * The inverse rotation of a unit quaternion.
+     */
+    public static void conjugate(float[] q, float[] out)
+    {
+        out[0] = q[0];
+        out[1] = -q[1];
+        out[2] = -q[2];
+        out[3] = -q[3];
+    }
+
+    /**
+     * Scale a quaternion to unit length.
+     */
+    public static void normalize(float[] q, float[] out)
+    {
+        float norm = (float) Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+
+        out[0] = q[0] / norm;
+        out[1] = q[1] / norm;
+        out[2] = q[2] / norm;
+        out[3] = q[3] / norm;
+    }
+
+    /**
+     * Rotate by the gyroscope rates held for dt: q * exp(omega * dt / 2),
+     * normalized.
+     *
+     * @param q  the rotation from the device frame to the world frame.
+     * @param wx the rate around the x axis of the device in rad/s.
+     * @param wy the rate around the y axis of the device in rad/s.
+     * @param wz the rate around the z axis of the device in rad/s.
+     * @param dt the time in seconds.
+     */
+    public static void integrate(float[] q, float wx, float wy, float wz, float dt, float[] out)
+    {
+        float omegaMagnitude = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+
+        if (omegaMagnitude > EPSILON)
+        {
+            wx /= omegaMagnitude;
+            wy /= omegaMagnitude;
+            wz /= omegaMagnitude;
+        }
+
+        float thetaOverTwo = omegaMagnitude * dt / 2.0f;
+        float sinThetaOverTwo = (float) Math.sin(thetaOverTwo);
+
+        float dw = (float) Math.cos(thetaOverTwo);
+        float dx = sinThetaOverTwo * wx;
+        float dy = sinThetaOverTwo * wy;
+        float dz = sinThetaOverTwo * wz;
+
+        float w = q[0], x = q[1], y = q[2], z = q[3];
+
+        float rw = w * dw - x * dx - y * dy - z * dz;
+        float rx = w * dx + x * dw + y * dz - z * dy;
+        float ry = w * dy - x * dz + y * dw + z * dx;
+        float rz = w * dz + x * dy - y * dx + z * dw;
+
+        float norm = (float) Math.sqrt(rw * rw + rx * rx + ry * ry + rz * rz);
+
+        out[0] = rw / norm;
+        out[1] = rx / norm;
+        out[2] = ry / norm;
+        out[3] = rz / norm;
+    }
+
+    /**
+     * The rotation matrix of a quaternion, row major.
+     */
+    public static void toRotationMatrix(float[] q, float[] out)
+    {
+        float w = q[0], x = q[1], y = q[2], z = q[3];
+
+        float xx = 2 * x * x, yy = 2 * y * y, zz = 2 * z * z;
+        float xy = 2 * x * y, xz = 2 * x * z, yz = 2 * y * z;
+        float wx = 2 * w * x, wy = 2 * w * y, wz = 2 * w * z;
+
+        out[0] = 1 - yy - zz;
+        out[1] = xy - wz;
+        out[2] = xz + wy;
+        out[3] = xy + wz;
+        out[4] = 1 - xx - zz;
+        out[5] = yz - wx;
+        out[6] = xz - wy;
+        out[7] = yz + wx;
+        out[8] = 1 - xx - yy;
+    }
+
+    /**
+     * The quaternion of a rotation matrix, row major.
+     */
+    public static void fromRotationMatrix(float[] r, float[] out)
+    {
+        fromRotationMatrix(r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8], out);
+    }
+
+    private static void fromRotationMatrix(float r0, float r1, float r2,
+                                           float r3, float r4, float r5,
+                                           float r6, float r7, float r8, float[] out)
+    {
+        float trace = r0 + r4 + r8;
+
+        // Divide by the largest of the four components to stay accurate
+        if (trace > 0)
+        {
+            float s = (float) Math.sqrt(trace + 1) * 2;
+            out[0] = 0.25f * s;
+            out[1] = (r7 - r5) / s;
+            out[2] = (r2 - r6) / s;
+            out[3] = (r3 - r1) / s;
+        }
+        else if (r0 > r4 && r0 > r8)
+        {
+            float s = (float) Math.sqrt(1 + r0 - r4 - r8) * 2;
+            out[0] = (r7 - r5) / s;
+            out[1] = 0.25f * s;
+            out[2] = (r1 + r3) / s;
+            out[3] = (r2 + r6) / s;
+        }
+        else if (r4 > r8)
+        {
+            float s = (float) Math.sqrt(1 + r4 - r0 - r8) * 2;
+            out[0] = (r2 - r6) / s;
+            out[1] = (r1 + r3) / s;
+            out[2] = 0.25f * s;
+            out[3] = (r5 + r7) / s;
+        }
+        else
+        {
+            float s = (float) Math.sqrt(1 + r8 - r0 - r4) * 2;
+            out[0] = (r3 - r1) / s;
+            out[1] = (r2 + r6) / s;
+            out[2] = (r5 + r7) / s;
+            out[3] = 0.25f * s;
+        }
+    }
+
+    /**
+     * The rotation of the device from gravity and the magnetic field, like
+     * {@link android.hardware.SensorManager#getRotationMatrix}.
+     *
+     * @param acceleration the acceleration of the device in m/s^2, including
+     *                     gravity.
+     * @param magnetic     the magnetic field around the device in uT.
+     * @return false if the rotation can't be found, in which case out is left
+     * alone.
+     */
+    public static boolean fromAccelerationMagnetic(float[] acceleration, float[] magnetic, float[] out)
+    {
+        float ax = acceleration[0], ay = acceleration[1], az = acceleration[2];
+
+        float normSquaredA = ax * ax + ay * ay + az * az;
+
+        if (normSquaredA < MIN_GRAVITY_SQUARED)
+        {
+            // Gravity can't be found in free fall
+            return false;
+        }
+
+        float ex = magnetic[0], ey = magnetic[1], ez = magnetic[2];
+
+        // East is the cross product of the magnetic field and up
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+
+        float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+
+        if (normH < 0.1f)
+        {
+            // The device is close to free fall, or close to magnetic north
+            // pole. Typical values are > 100.
+            return false;
+        }
+
+        float invH = 1.0f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+
+        float invA = 1.0f / (float) Math.sqrt(normSquaredA);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+
+        // North is the cross product of up and east
+        float mx = ay * hz - az * hy;
+        float my = az * hx - ax * hz;
+        float mz = ax * hy - ay * hx;
+
+        fromRotationMatrix(hx, hy, hz, mx, my, mz, ax, ay, az, out);
+
+        return true;
+    }
+
+    /**
+     * The azimuth, pitch and roll of a quaternion in radians, as
+     * {@link android.hardware.SensorManager#getOrientation} returns them for
+     * its rotation matrix.
+     */
+    public static void toOrientation(float[] q, float[] out)
+    {
+        float w = q[0], x = q[1], y = q[2], z = q[3];
+
+        // Only the rotation matrix elements getOrientation() uses
+        float r1 = 2 * (x * y - w * z);
+        float r4 = 1 - 2 * (x * x + z * z);
+        float r6 = 2 * (x * z - w * y);
+        float r7 = 2 * (y * z + w * x);
+        float r8 = 1 - 2 * (x * x + y * y);
+
+        // Rounding can take r7 just past +/-1 facing straight up or down
+        if (r7 > 1)
+        {
+            r7 = 1;
+        }
+        else if (r7 < -1)
+        {
+            r7 = -1;
+        }
+
+        out[0] = (float) Math.atan2(r1, r4);
+        out[1] = (float) Math.asin(-r7);
+        out[2] = (float) Math.atan2(-r6, r8);
+    }
+
+    /**
+     * The quaternion of an azimuth, pitch and roll in radians, the inverse of
+     * {@link #toOrientation(float[], float[])}.
+     */
+    public static void fromOrientation(float[] orientation, float[] out)
+    {
+        // R = Rz(-azimuth) * Rx(-pitch) * Ry(roll)
+        double halfAzimuth = -orientation[0] / 2.0;
+        double halfPitch = -orientation[1] / 2.0;
+        double halfRoll = orientation[2] / 2.0;
+
+        double cz = Math.cos(halfAzimuth), sz = Math.sin(halfAzimuth);
+        double cx = Math.cos(halfPitch), sx = Math.sin(halfPitch);
+        double cy = Math.cos(halfRoll), sy = Math.sin(halfRoll);
+
+        out[0] = (float) (cz * cx * cy - sz * sx * sy);
+        out[1] = (float) (cz * sx * cy - sz * cx * sy);
+        out[2] = (float) (cz * cx * sy + sz * sx * cy);
+        out[3] = (float) (sz * cx * cy + cz * sx * sy);
+    }
+}
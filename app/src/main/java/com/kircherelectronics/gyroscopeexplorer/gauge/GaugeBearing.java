@@ -1,20 +1,16 @@
 package com.kircherelectronics.gyroscopeexplorer.gauge;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.PorterDuff.Mode;
-import android.graphics.Path;
-import android.graphics.RectF;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
+import androidx.core.view.ViewCompat;
+
 /*
  * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
  *
@@ -33,7 +29,8 @@ import android.view.View;
 
 /**
  * Draws an analog gauge (a compass) for displaying bearing measurements from
- * device sensors.
+ * device sensors. The drawing is done by a {@link GaugeBearingRenderer} on the
+ * UI thread.
  * 
  * @author Kaleb
  */
@@ -42,34 +39,9 @@ public final class GaugeBearing extends View
 
 	private static final String tag = GaugeBearing.class.getSimpleName();
 
-	private static final int DEGREE_CENTER = 0;
-	private static final int DEGREE_MIN = 0;
-	private static final int DEGREE_MAX = 360;
-
-	private boolean handInitialized = false;
-
-	private double handPosition = DEGREE_CENTER;
-	private double handTarget = DEGREE_CENTER;
-	private double handVelocity = 0.0f;
-	private double handAcceleration = 0.0f;
-
-	private long lastHandMoveTime = -1L;
-
-	// Static bitmaps
-	private Bitmap background;
-	private Bitmap hand;
-
-	private Paint backgroundPaint;
-	private Paint facePaint;
-	private Paint handPaint;
-	private Paint rimPaint;
-	private Paint rimOuterPaint;
-
-	private Path handPath;
+	private final GaugeBearingRenderer renderer = new GaugeBearingRenderer();
 
-	private RectF faceRect;
-	private RectF rimRect;
-	private RectF rimOuterRect;
+	private final Rect dirty = new Rect();
 
 	/**
 	 * Create a new instance.
@@ -79,7 +51,6 @@ public final class GaugeBearing extends View
 	public GaugeBearing(Context context)
 	{
 		super(context);
-		init();
 	}
 
 	/**
@@ -91,7 +62,6 @@ public final class GaugeBearing extends View
 	public GaugeBearing(Context context, AttributeSet attrs)
 	{
 		super(context, attrs);
-		init();
 	}
 
 	/**
@@ -104,7 +74,6 @@ public final class GaugeBearing extends View
 	public GaugeBearing(Context context, AttributeSet attrs, int defStyle)
 	{
 		super(context, attrs, defStyle);
-		init();
 	}
 
 	/**
@@ -114,11 +83,18 @@ public final class GaugeBearing extends View
 	 */
 	public void updateBearing(double azimuth)
 	{
-		// Adjust the range: 0 < range <= 360 (from: -180 < range <=
-		// 180)
-		azimuth = (float) (Math.toDegrees(azimuth) + 360) % 360;
+		renderer.setBearing(azimuth);
 
-		setHandTarget(azimuth);
+		// Views with hardware acceleration redraw everything anyway, but
+		// software rendering only redraws the dirty area
+		if (renderer.getDirtyBounds(dirty))
+		{
+			invalidate(dirty.left, dirty.top, dirty.right, dirty.bottom);
+		}
+		else
+		{
+			invalidate();
+		}
 	}
 
 	/**
@@ -127,11 +103,11 @@ public final class GaugeBearing extends View
 	@Override
 	protected void onDraw(Canvas canvas)
 	{
-		drawBackground(canvas);
-
-		drawHand(canvas);
-
-		moveHand();
+		if (renderer.draw(canvas, getDrawingTime()))
+		{
+			// Keep animating on the following frames until the hand settles
+			ViewCompat.postInvalidateOnAnimation(this);
+		}
 	}
 
 	@Override
@@ -141,12 +117,7 @@ public final class GaugeBearing extends View
 		Parcelable superState = bundle.getParcelable("superState");
 		super.onRestoreInstanceState(superState);
 
-		handInitialized = bundle.getBoolean("handInitialized");
-		handPosition = bundle.getFloat("handPosition");
-		handTarget = bundle.getFloat("handTarget");
-		handVelocity = bundle.getFloat("handVelocity");
-		handAcceleration = bundle.getFloat("handAcceleration");
-		lastHandMoveTime = bundle.getLong("lastHandMoveTime");
+		renderer.restoreState(bundle);
 	}
 
 	@Override
@@ -156,78 +127,10 @@ public final class GaugeBearing extends View
 
 		Bundle state = new Bundle();
 		state.putParcelable("superState", superState);
-		state.putBoolean("handInitialized", handInitialized);
-		state.putDouble("handPosition", handPosition);
-		state.putDouble("handTarget", handTarget);
-		state.putDouble("handVelocity", handVelocity);
-		state.putDouble("handAcceleration", handAcceleration);
-		state.putLong("lastHandMoveTime", lastHandMoveTime);
+		renderer.saveState(state);
 		return state;
 	}
 
-	/**
-	 * Initialize the instance.
-	 */
-	private void init()
-	{
-		initDrawingTools();
-	}
-
-	/**
-	 * Initialize the drawing tools.
-	 */
-	private void initDrawingTools()
-	{
-
-		// Rectangle for the rim of the gauge bezel
-		rimRect = new RectF(0.12f, 0.12f, 0.88f, 0.88f);
-
-		// Paint for the rim of the gauge bezel
-		rimPaint = new Paint();
-		rimPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-		// The linear gradient is a bit skewed for realism
-		rimPaint.setXfermode(new PorterDuffXfermode(Mode.CLEAR));
-
-		float rimOuterSize = -0.04f;
-		rimOuterRect = new RectF();
-		rimOuterRect.set(rimRect.left + rimOuterSize, rimRect.top
-				+ rimOuterSize, rimRect.right - rimOuterSize, rimRect.bottom
-				- rimOuterSize);
-
-		rimOuterPaint = new Paint();
-		rimOuterPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-		rimOuterPaint.setColor(Color.rgb(158,158,158));
-
-		float rimSize = 0.03f;
-		faceRect = new RectF();
-		faceRect.set(rimRect.left + rimSize, rimRect.top + rimSize,
-				rimRect.right - rimSize, rimRect.bottom - rimSize);
-
-		facePaint = new Paint();
-		facePaint.setStyle(Paint.Style.FILL);
-		facePaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-		facePaint.setAntiAlias(true);
-		facePaint.setColor(Color.TRANSPARENT);
-
-		handPaint = new Paint();
-		handPaint.setAntiAlias(true);
-		handPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-		handPaint.setColor(Color.rgb(158,158,158));
-		handPaint.setStyle(Paint.Style.FILL);
-
-		handPath = new Path();
-		handPath.moveTo(0.5f, 0.5f + 0.32f);
-		handPath.lineTo(0.5f - 0.02f, 0.5f + 0.32f - 0.32f);
-
-		handPath.lineTo(0.5f, 0.5f - 0.32f);
-		handPath.lineTo(0.5f + 0.02f, 0.5f + 0.32f - 0.32f);
-		handPath.lineTo(0.5f, 0.5f + 0.32f);
-		handPath.addCircle(0.5f, 0.5f, 0.025f, Path.Direction.CW);
-
-		backgroundPaint = new Paint();
-		backgroundPaint.setFilterBitmap(true);
-	}
-
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec)
 	{
@@ -274,151 +177,12 @@ public final class GaugeBearing extends View
 		return 300;
 	}
 
-	/**
-	 * Draw the rim of the gauge.
-	 * 
-	 * @param canvas
-	 */
-	private void drawRim(Canvas canvas)
-	{
-		// First draw the most back rim
-		canvas.drawOval(rimOuterRect, rimOuterPaint);
-		// Then draw the small black line
-		canvas.drawOval(rimRect, rimPaint);
-	}
-
-	/**
-	 * Draw the face of the gauge.
-	 * 
-	 * @param canvas
-	 */
-	private void drawFace(Canvas canvas)
-	{
-		canvas.drawOval(faceRect, facePaint);
-	}
-
-
-	/**
-	 * Draw the gauge hand.
-	 * 
-	 * @param canvas
-	 */
-	/**
-	 * Draw the gauge hand.
-	 * 
-	 * @param canvas
-	 */
-	private void drawHand(Canvas canvas)
-	{
-		// *Bug Notice* We draw the hand with a bitmap and a new canvas because
-		// canvas.drawPath() doesn't work. This seems to be related to devices
-		// with hardware acceleration enabled.
-
-		// free the old bitmap
-		if (hand != null)
-		{
-			hand.recycle();
-		}
-
-		hand = Bitmap.createBitmap(getWidth(), getHeight(),
-				Bitmap.Config.ARGB_8888);
-		Canvas handCanvas = new Canvas(hand);
-		float scale = (float) getWidth();
-		handCanvas.scale(scale, scale);
-
-		if (handInitialized)
-		{
-			handCanvas.save();
-			handCanvas.rotate((float) handPosition, 0.5f, 0.5f);
-			handCanvas.drawPath(handPath, handPaint);
-		}
-		else
-		{
-
-			handCanvas.save();
-			handCanvas.rotate((float) handPosition, 0.5f, 0.5f);
-			handCanvas.drawPath(handPath, handPaint);
-		}
-
-		canvas.drawBitmap(hand, 0, 0, backgroundPaint);
-	}
-
-	/**
-	 * Draw the background of the gauge.
-	 * 
-	 * @param canvas
-	 */
-	private void drawBackground(Canvas canvas)
-	{
-		if (background == null)
-		{
-			Log.w(tag, "Background not created");
-		}
-		else
-		{
-			canvas.drawBitmap(background, 0, 0, backgroundPaint);
-		}
-	}
-
 	@Override
 	protected void onSizeChanged(int w, int h, int oldw, int oldh)
 	{
 		Log.d(tag, "Size changed to " + w + "x" + h);
 
-		regenerateBackground();
-	}
-
-	/**
-	 * Regenerate the background image. This should only be called when the size
-	 * of the screen has changed. The background will be cached and can be
-	 * reused without needing to redraw it.
-	 */
-	private void regenerateBackground()
-	{
-		// free the old bitmap
-		if (background != null)
-		{
-			background.recycle();
-		}
-
-		background = Bitmap.createBitmap(getWidth(), getHeight(),
-				Bitmap.Config.ARGB_8888);
-		Canvas backgroundCanvas = new Canvas(background);
-		float scale = (float) getWidth();
-		backgroundCanvas.scale(scale, scale);
-
-		drawRim(backgroundCanvas);
-		drawFace(backgroundCanvas);
-	}
-
-	/**
-	 * Move the hand.
-	 */
-	private void moveHand()
-	{
-		handPosition = handTarget;
-	}
-
-	/**
-	 * Indicate where the hand should be moved to.
-	 * 
-	 * @param bearing
-	 */
-	private void setHandTarget(double bearing)
-	{
-		if (bearing < DEGREE_MIN)
-		{
-			bearing = DEGREE_MIN;
-		}
-		else if (bearing > DEGREE_MAX)
-		{
-			bearing = DEGREE_MAX;
-		}
-
-		handTarget = bearing;
-		handInitialized = true;
-
-		invalidate();
+		renderer.setSize(w, h);
 	}
 
 }
@@ -0,0 +1,435 @@
+package com.kircherelectronics.gyroscopeexplorer.gauge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff.Mode;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Draws the compass gauge onto any canvas. Used by {@link GaugeBearing} on
+ * the UI thread and by {@link GaugeBearingSurface} on a render thread. An
+ * instance must only be used from one thread.
+ * 
+ * @author Kaleb
+ */
+public class GaugeBearingRenderer
+{
+	private static final int DEGREE_CENTER = 0;
+	private static final int DEGREE_MIN = 0;
+	private static final int DEGREE_MAX = 360;
+
+	// Natural frequency of the critically damped hand in radians per second,
+	// it settles on a new target in about 4 / HAND_FREQUENCY seconds
+	private static final double HAND_FREQUENCY = 12;
+
+	// The hand snaps to the target once it is this close and this slow
+	private static final double HAND_SETTLE_DEGREES = 0.05;
+	private static final double HAND_SETTLE_VELOCITY = 0.5;
+
+	// Longer frame gaps, e.g. after the view was hidden, are not simulated
+	private static final double HAND_MAX_STEP = 0.1;
+
+	private boolean handInitialized = false;
+
+	private double handPosition = DEGREE_CENTER;
+	private double handTarget = DEGREE_CENTER;
+	private double handVelocity = 0.0f;
+	private double handAcceleration = 0.0f;
+
+	private long lastHandMoveTime = -1L;
+
+	private int width;
+	private int height;
+
+	// Static bitmaps
+	private Bitmap background;
+	private Bitmap hand;
+
+	// Where the hand bitmap is drawn before it is rotated, in pixels
+	private final RectF handBounds = new RectF();
+
+	// Used to find the dirty bounds of the rotated hand
+	private final Matrix handMatrix = new Matrix();
+	private final RectF handDirty = new RectF();
+	private final RectF handDirtyTarget = new RectF();
+
+	private Paint backgroundPaint;
+	private Paint facePaint;
+	private Paint handPaint;
+	private Paint rimPaint;
+	private Paint rimOuterPaint;
+
+	private Path handPath;
+
+	private RectF faceRect;
+	private RectF rimRect;
+	private RectF rimOuterRect;
+
+	public GaugeBearingRenderer()
+	{
+		initDrawingTools();
+	}
+
+	/**
+	 * Update the bearing of the device.
+	 * 
+	 * @param azimuth
+	 */
+	public void setBearing(double azimuth)
+	{
+		// Adjust the range: 0 < range <= 360 (from: -180 < range <=
+		// 180)
+		azimuth = (float) (Math.toDegrees(azimuth) + 360) % 360;
+
+		setHandTarget(azimuth);
+	}
+
+	/**
+	 * Set the size of the gauge and regenerate the cached images. This should
+	 * only be called when the size of the screen has changed.
+	 */
+	public void setSize(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+
+		regenerateBackground();
+		regenerateHand();
+	}
+
+	/**
+	 * Draw the gauge and move the hand for the next frame.
+	 * 
+	 * @param canvas
+	 * @param time
+	 *            the time of the frame in milliseconds.
+	 * @return true if the hand is still moving and the gauge should be drawn
+	 *         again on the next frame.
+	 */
+	public boolean draw(Canvas canvas, long time)
+	{
+		drawBackground(canvas);
+
+		drawHand(canvas);
+
+		return moveHand(time);
+	}
+
+	/**
+	 * Find the area covered by the hand where it was last drawn and where it
+	 * is heading to.
+	 * 
+	 * @param dirty
+	 *            receives the area in pixels.
+	 * @return false if the hand has not been rendered yet and the whole gauge
+	 *         is dirty.
+	 */
+	public boolean getDirtyBounds(Rect dirty)
+	{
+		if (hand == null)
+		{
+			return false;
+		}
+
+		float centerX = width / 2f;
+		float centerY = height / 2f;
+
+		handMatrix.setRotate((float) handPosition, centerX, centerY);
+		handMatrix.mapRect(handDirty, handBounds);
+		handMatrix.setRotate((float) handTarget, centerX, centerY);
+		handMatrix.mapRect(handDirtyTarget, handBounds);
+		handDirty.union(handDirtyTarget);
+		handDirty.roundOut(dirty);
+
+		return true;
+	}
+
+	public void saveState(Bundle state)
+	{
+		state.putBoolean("handInitialized", handInitialized);
+		state.putDouble("handPosition", handPosition);
+		state.putDouble("handTarget", handTarget);
+		state.putDouble("handVelocity", handVelocity);
+		state.putDouble("handAcceleration", handAcceleration);
+		state.putLong("lastHandMoveTime", lastHandMoveTime);
+	}
+
+	public void restoreState(Bundle state)
+	{
+		handInitialized = state.getBoolean("handInitialized");
+		handPosition = state.getDouble("handPosition");
+		handTarget = state.getDouble("handTarget");
+		handVelocity = state.getDouble("handVelocity");
+		handAcceleration = state.getDouble("handAcceleration");
+		lastHandMoveTime = state.getLong("lastHandMoveTime");
+	}
+
+	/**
+	 * Initialize the drawing tools.
+	 */
+	private void initDrawingTools()
+	{
+
+		// Rectangle for the rim of the gauge bezel
+		rimRect = new RectF(0.12f, 0.12f, 0.88f, 0.88f);
+
+		// Paint for the rim of the gauge bezel
+		rimPaint = new Paint();
+		rimPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		// The linear gradient is a bit skewed for realism
+		rimPaint.setXfermode(new PorterDuffXfermode(Mode.CLEAR));
+
+		float rimOuterSize = -0.04f;
+		rimOuterRect = new RectF();
+		rimOuterRect.set(rimRect.left + rimOuterSize, rimRect.top
+				+ rimOuterSize, rimRect.right - rimOuterSize, rimRect.bottom
+				- rimOuterSize);
+
+		rimOuterPaint = new Paint();
+		rimOuterPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		rimOuterPaint.setColor(Color.rgb(158,158,158));
+
+		float rimSize = 0.03f;
+		faceRect = new RectF();
+		faceRect.set(rimRect.left + rimSize, rimRect.top + rimSize,
+				rimRect.right - rimSize, rimRect.bottom - rimSize);
+
+		facePaint = new Paint();
+		facePaint.setStyle(Paint.Style.FILL);
+		facePaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		facePaint.setAntiAlias(true);
+		facePaint.setColor(Color.TRANSPARENT);
+
+		handPaint = new Paint();
+		handPaint.setAntiAlias(true);
+		handPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		handPaint.setColor(Color.rgb(158,158,158));
+		handPaint.setStyle(Paint.Style.FILL);
+
+		handPath = new Path();
+		handPath.moveTo(0.5f, 0.5f + 0.32f);
+		handPath.lineTo(0.5f - 0.02f, 0.5f + 0.32f - 0.32f);
+
+		handPath.lineTo(0.5f, 0.5f - 0.32f);
+		handPath.lineTo(0.5f + 0.02f, 0.5f + 0.32f - 0.32f);
+		handPath.lineTo(0.5f, 0.5f + 0.32f);
+		handPath.addCircle(0.5f, 0.5f, 0.025f, Path.Direction.CW);
+
+		backgroundPaint = new Paint();
+		backgroundPaint.setFilterBitmap(true);
+	}
+
+	/**
+	 * Draw the rim of the gauge.
+	 * 
+	 * @param canvas
+	 */
+	private void drawRim(Canvas canvas)
+	{
+		// First draw the most back rim
+		canvas.drawOval(rimOuterRect, rimOuterPaint);
+		// Then draw the small black line
+		canvas.drawOval(rimRect, rimPaint);
+	}
+
+	/**
+	 * Draw the face of the gauge.
+	 * 
+	 * @param canvas
+	 */
+	private void drawFace(Canvas canvas)
+	{
+		canvas.drawOval(faceRect, facePaint);
+	}
+
+	/**
+	 * Draw the gauge hand.
+	 * 
+	 * @param canvas
+	 */
+	private void drawHand(Canvas canvas)
+	{
+		if (hand == null)
+		{
+			return;
+		}
+
+		// The hand was rendered once by regenerateHand(), it only has to be
+		// rotated into place
+		canvas.save();
+		canvas.rotate((float) handPosition, width / 2f, height / 2f);
+		canvas.drawBitmap(hand, handBounds.left, handBounds.top, backgroundPaint);
+		canvas.restore();
+	}
+
+	/**
+	 * Draw the background of the gauge.
+	 * 
+	 * @param canvas
+	 */
+	private void drawBackground(Canvas canvas)
+	{
+		if (background != null)
+		{
+			canvas.drawBitmap(background, 0, 0, backgroundPaint);
+		}
+	}
+
+	/**
+	 * Regenerate the background image. This should only be called when the size
+	 * of the screen has changed. The background will be cached and can be
+	 * reused without needing to redraw it.
+	 */
+	private void regenerateBackground()
+	{
+		// free the old bitmap
+		if (background != null)
+		{
+			background.recycle();
+		}
+
+		background = Bitmap.createBitmap(width, height,
+				Bitmap.Config.ARGB_8888);
+		Canvas backgroundCanvas = new Canvas(background);
+		float scale = (float) width;
+		backgroundCanvas.scale(scale, scale);
+
+		drawRim(backgroundCanvas);
+		drawFace(backgroundCanvas);
+	}
+
+	/**
+	 * Regenerate the hand image. Like the background, this should only be
+	 * called when the size of the screen has changed. The bitmap only covers
+	 * the hand, pointing up, and is rotated when it is drawn.
+	 */
+	private void regenerateHand()
+	{
+		// *Bug Notice* We draw the hand with a bitmap and a new canvas because
+		// canvas.drawPath() doesn't work. This seems to be related to devices
+		// with hardware acceleration enabled.
+
+		// free the old bitmap
+		if (hand != null)
+		{
+			hand.recycle();
+		}
+
+		float scale = (float) width;
+
+		// Leave room for the anti-aliased edges
+		handPath.computeBounds(handBounds, true);
+		handBounds.set((float) Math.floor(handBounds.left * scale) - 1,
+				(float) Math.floor(handBounds.top * scale) - 1,
+				(float) Math.ceil(handBounds.right * scale) + 1,
+				(float) Math.ceil(handBounds.bottom * scale) + 1);
+
+		hand = Bitmap.createBitmap((int) handBounds.width(),
+				(int) handBounds.height(), Bitmap.Config.ARGB_8888);
+		Canvas handCanvas = new Canvas(hand);
+		handCanvas.translate(-handBounds.left, -handBounds.top);
+		handCanvas.scale(scale, scale);
+		handCanvas.drawPath(handPath, handPaint);
+	}
+
+	/**
+	 * Move the hand towards the target as a critically damped spring, the
+	 * fastest motion that doesn't overshoot. The step is solved exactly for
+	 * the time since the last frame, so the motion looks the same at any
+	 * frame rate.
+	 * 
+	 * @param time
+	 *            the time of the frame in milliseconds.
+	 * @return true if the hand is still moving.
+	 */
+	private boolean moveHand(long time)
+	{
+		if (lastHandMoveTime < 0)
+		{
+			lastHandMoveTime = time;
+			return handPosition != handTarget;
+		}
+
+		double dt = Math.min((time - lastHandMoveTime) / 1000.0, HAND_MAX_STEP);
+		lastHandMoveTime = time;
+
+		// Offset from the target the short way around the dial
+		double offset = handPosition - handTarget;
+		offset -= 360 * Math.floor((offset + 180) / 360);
+
+		double decay = Math.exp(-HAND_FREQUENCY * dt);
+		double change = (handVelocity + HAND_FREQUENCY * offset) * dt;
+		double velocity = (handVelocity - HAND_FREQUENCY * change) * decay;
+		offset = (offset + change) * decay;
+
+		handAcceleration = dt > 0 ? (velocity - handVelocity) / dt : 0;
+		handVelocity = velocity;
+
+		if (Math.abs(offset) < HAND_SETTLE_DEGREES
+				&& Math.abs(handVelocity) < HAND_SETTLE_VELOCITY)
+		{
+			handPosition = handTarget;
+			handVelocity = 0;
+			handAcceleration = 0;
+			return false;
+		}
+
+		handPosition = (handTarget + offset + DEGREE_MAX) % DEGREE_MAX;
+		return true;
+	}
+
+	/**
+	 * Indicate where the hand should be moved to.
+	 * 
+	 * @param bearing
+	 */
+	private void setHandTarget(double bearing)
+	{
+		if (bearing < DEGREE_MIN)
+		{
+			bearing = DEGREE_MIN;
+		}
+		else if (bearing > DEGREE_MAX)
+		{
+			bearing = DEGREE_MAX;
+		}
+
+		if (!handInitialized)
+		{
+			// Start at the first bearing instead of swinging over from north
+			handPosition = bearing;
+		}
+
+		if (handPosition == handTarget)
+		{
+			// The hand was at rest, don't simulate the time it spent there
+			lastHandMoveTime = -1L;
+		}
+
+		handTarget = bearing;
+		handInitialized = true;
+	}
+}
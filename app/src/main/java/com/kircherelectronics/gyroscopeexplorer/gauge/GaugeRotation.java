@@ -1,21 +1,11 @@
 package com.kircherelectronics.gyroscopeexplorer.gauge;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuff.Mode;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.RectF;
-import android.hardware.SensorManager;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
-import java.util.Arrays;
-
 /*
  * AccelerationExplorer
  * Copyright 2017 Kircher Electronics, LLC
@@ -35,7 +25,8 @@ import java.util.Arrays;
 
 /**
  * Draws an analog gauge for displaying rotation measurements in three-space
- * from device sensors.
+ * from device sensors. The drawing is done by a {@link GaugeRotationRenderer}
+ * on the UI thread.
  *
  * @author Kaleb
  */
@@ -43,37 +34,7 @@ public final class GaugeRotation extends View {
 
     private static final String TAG = GaugeRotation.class.getSimpleName();
 
-    // drawing tools
-    private RectF rimOuterRect;
-    private Paint rimOuterPaint;
-
-    // Keep static bitmaps of the gauge so we only have to redraw if we have to
-    // Static bitmap for the bezel of the gauge
-    private Bitmap bezelBitmap;
-    // Static bitmap for the face of the gauge
-    private Bitmap faceBitmap;
-    private Bitmap skyBitmap;
-    private Bitmap mutableBitmap;
-
-    // Keep track of the rotation of the device
-    private float x;
-    private float y;
-
-    // Rectangle to draw the rim of the gauge
-    private RectF rimRect;
-
-    // Rectangle to draw the sky section of the gauge face
-    private RectF faceBackgroundRect;
-    private RectF skyBackgroundRect;
-
-    // Paint to draw the gauge bitmaps
-    private Paint backgroundPaint;
-
-    // Paint to draw the rim of the bezel
-    private Paint rimPaint;
-
-    // Paint to draw the sky portion of the gauge face
-    private Paint skyPaint;
+    private final GaugeRotationRenderer renderer = new GaugeRotationRenderer();
 
     /**
      * Create a new instance.
@@ -82,8 +43,6 @@ public final class GaugeRotation extends View {
      */
     public GaugeRotation(Context context) {
         super(context);
-
-        initDrawingTools();
     }
 
     /**
@@ -94,8 +53,6 @@ public final class GaugeRotation extends View {
      */
     public GaugeRotation(Context context, AttributeSet attrs) {
         super(context, attrs);
-
-        initDrawingTools();
     }
 
     /**
@@ -107,8 +64,6 @@ public final class GaugeRotation extends View {
      */
     public GaugeRotation(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-
-        initDrawingTools();
     }
 
     /**
@@ -116,51 +71,11 @@ public final class GaugeRotation extends View {
      *
      */
     public void updateRotation(float x, float y) {
-        this.x = x;
-        this.y = y;
+        renderer.setRotation(x, y);
 
         this.invalidate();
     }
 
-    private void initDrawingTools() {
-        // Rectangle for the rim of the gauge bezel
-        rimRect = new RectF(0.12f, 0.12f, 0.88f, 0.88f);
-
-        // Paint for the rim of the gauge bezel
-        rimPaint = new Paint();
-        rimPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-        // The linear gradient is a bit skewed for realism
-        rimPaint.setXfermode(new PorterDuffXfermode(Mode.CLEAR));
-
-        float rimOuterSize = -0.04f;
-        rimOuterRect = new RectF();
-        rimOuterRect.set(rimRect.left + rimOuterSize, rimRect.top
-                + rimOuterSize, rimRect.right - rimOuterSize, rimRect.bottom
-                - rimOuterSize);
-
-        rimOuterPaint = new Paint();
-        rimOuterPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-        rimOuterPaint.setColor(Color.GRAY);
-
-        float rimSize = 0.02f;
-
-        faceBackgroundRect = new RectF();
-        faceBackgroundRect.set(rimRect.left + rimSize, rimRect.top + rimSize,
-                rimRect.right - rimSize, rimRect.bottom - rimSize);
-
-        skyBackgroundRect = new RectF();
-        skyBackgroundRect.set(rimRect.left + rimSize, rimRect.top + rimSize,
-                rimRect.right - rimSize, rimRect.bottom - rimSize);
-
-        skyPaint = new Paint();
-        skyPaint.setAntiAlias(true);
-        skyPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
-        skyPaint.setColor(Color.GRAY);
-
-        backgroundPaint = new Paint();
-        backgroundPaint.setFilterBitmap(true);
-    }
-
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int widthMode = MeasureSpec.getMode(widthMeasureSpec);
@@ -190,135 +105,16 @@ public final class GaugeRotation extends View {
         return 300;
     }
 
-    /**
-     * Draw the gauge rim.
-     *
-     * @param canvas
-     */
-    private void drawRim(Canvas canvas) {
-        // First draw the most back rim
-        canvas.drawOval(rimOuterRect, rimOuterPaint);
-        // Then draw the small black line
-        canvas.drawOval(rimRect, rimPaint);
-    }
-
-    /**
-     * Draw the gauge face.
-     *
-     * @param canvas
-     */
-    private void drawFace(Canvas canvas) {
-
-        float halfHeight = ((rimRect.top - rimRect.bottom)/2);
-
-        double top = rimRect.top - halfHeight + (x*halfHeight);
-        
-        if(rimRect.left <= rimRect.right && top <= rimRect.bottom) {
-            // free the old bitmap
-            if (faceBitmap != null) {
-                faceBitmap.recycle();
-            }
-
-            if (skyBitmap != null) {
-                skyBitmap.recycle();
-            }
-
-            if (mutableBitmap != null) {
-                mutableBitmap.recycle();
-            }
-
-            skyPaint.setFilterBitmap(false);
-
-            faceBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
-                    Bitmap.Config.ARGB_8888);
-            skyBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
-                    Bitmap.Config.ARGB_8888);
-            mutableBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
-                    Bitmap.Config.ARGB_8888);
-
-            Canvas faceCanvas = new Canvas(faceBitmap);
-            Canvas skyCanvas = new Canvas(skyBitmap);
-            Canvas mutableCanvas = new Canvas(mutableBitmap);
-            float scale = (float) getWidth();
-            faceCanvas.scale(scale, scale);
-            skyCanvas.scale(scale, scale);
-
-            faceBackgroundRect.set(rimRect.left, rimRect.top, rimRect.right,
-                    rimRect.bottom);
-
-
-            skyBackgroundRect.set(rimRect.left, (float) top, rimRect.right,
-                    rimRect.bottom);
-
-            faceCanvas.drawArc(faceBackgroundRect, 0, 360, true, skyPaint);
-            skyCanvas.drawRect(skyBackgroundRect, skyPaint);
-
-            float angle = (float) -Math.toDegrees(y);
-
-            canvas.save();
-            canvas.rotate(angle, faceBitmap.getWidth() / 2f,
-                    faceBitmap.getHeight() / 2f);
-
-            mutableCanvas.drawBitmap(faceBitmap, 0, 0, skyPaint);
-            skyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
-            mutableCanvas.drawBitmap(skyBitmap, 0, 0, skyPaint);
-            skyPaint.setXfermode(null);
-
-            canvas.drawBitmap(mutableBitmap, 0, 0, backgroundPaint);
-            canvas.restore();
-        }
-    }
-
-    /**
-     * Draw the gauge bezel.
-     *
-     * @param canvas
-     */
-    private void drawBezel(Canvas canvas) {
-        if (bezelBitmap == null) {
-            Log.w(TAG, "Bezel not created");
-        } else {
-            canvas.drawBitmap(bezelBitmap, 0, 0, backgroundPaint);
-        }
-    }
-
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         Log.d(TAG, "Size changed to " + w + "x" + h);
 
-        regenerateBezel();
-    }
-
-    /**
-     * Regenerate the background image. This should only be called when the size
-     * of the screen has changed. The background will be cached and can be
-     * reused without needing to redraw it.
-     */
-    private void regenerateBezel() {
-        // free the old bitmap
-        if (bezelBitmap != null) {
-            bezelBitmap.recycle();
-        }
-
-        bezelBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
-                Bitmap.Config.ARGB_8888);
-        Canvas bezelCanvas = new Canvas(bezelBitmap);
-        float scale = (float) getWidth();
-        bezelCanvas.scale(scale, scale);
-
-        drawRim(bezelCanvas);
+        renderer.setSize(w, h);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
-        drawBezel(canvas);
-        drawFace(canvas);
-
-        float scale = (float) getWidth();
-        canvas.save();
-        canvas.scale(scale, scale);
-
-        canvas.restore();
+        renderer.draw(canvas);
     }
 
 }
@@ -0,0 +1,200 @@
+package com.kircherelectronics.gyroscopeexplorer.gauge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff.Mode;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+
+/*
+ * AccelerationExplorer
+ * Copyright 2017 Kircher Electronics, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Draws the rotation gauge onto any canvas. Used by {@link GaugeRotation} on
+ * the UI thread and by {@link GaugeRotationSurface} on a render thread. An
+ * instance must only be used from one thread.
+ *
+ * @author Kaleb
+ */
+public class GaugeRotationRenderer {
+
+    // drawing tools
+    private RectF rimOuterRect;
+    private Paint rimOuterPaint;
+
+    // Keep static bitmaps of the gauge so we only have to redraw if we have to
+    // Static bitmap for the bezel of the gauge
+    private Bitmap bezelBitmap;
+
+    private int width;
+    private int height;
+
+    // Keep track of the rotation of the device
+    private float x;
+    private float y;
+
+    // Rectangle to draw the rim of the gauge
+    private RectF rimRect;
+
+    // Rectangle to draw the sky section of the gauge face
+    private RectF faceBackgroundRect;
+
+    // Paint to draw the gauge bitmaps
+    private Paint backgroundPaint;
+
+    // Paint to draw the rim of the bezel
+    private Paint rimPaint;
+
+    // Paint to draw the sky portion of the gauge face
+    private Paint skyPaint;
+
+    public GaugeRotationRenderer() {
+        initDrawingTools();
+    }
+
+    /**
+     * Update the rotation of the device.
+     */
+    public void setRotation(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Set the size of the gauge and regenerate the bezel. This should only
+     * be called when the size of the screen has changed.
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        regenerateBezel();
+    }
+
+    public void draw(Canvas canvas) {
+        drawBezel(canvas);
+        drawFace(canvas);
+    }
+
+    private void initDrawingTools() {
+        // Rectangle for the rim of the gauge bezel
+        rimRect = new RectF(0.12f, 0.12f, 0.88f, 0.88f);
+
+        // Paint for the rim of the gauge bezel
+        rimPaint = new Paint();
+        rimPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+        // The linear gradient is a bit skewed for realism
+        rimPaint.setXfermode(new PorterDuffXfermode(Mode.CLEAR));
+
+        float rimOuterSize = -0.04f;
+        rimOuterRect = new RectF();
+        rimOuterRect.set(rimRect.left + rimOuterSize, rimRect.top
+                + rimOuterSize, rimRect.right - rimOuterSize, rimRect.bottom
+                - rimOuterSize);
+
+        rimOuterPaint = new Paint();
+        rimOuterPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+        rimOuterPaint.setColor(Color.GRAY);
+
+        faceBackgroundRect = new RectF();
+        faceBackgroundRect.set(rimRect.left, rimRect.top, rimRect.right,
+                rimRect.bottom);
+
+        skyPaint = new Paint();
+        skyPaint.setAntiAlias(true);
+        skyPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+        skyPaint.setColor(Color.GRAY);
+
+        backgroundPaint = new Paint();
+        backgroundPaint.setFilterBitmap(true);
+    }
+
+    /**
+     * Draw the gauge rim.
+     *
+     * @param canvas
+     */
+    private void drawRim(Canvas canvas) {
+        // First draw the most back rim
+        canvas.drawOval(rimOuterRect, rimOuterPaint);
+        // Then draw the small black line
+        canvas.drawOval(rimRect, rimPaint);
+    }
+
+    /**
+     * Draw the gauge face. The sky is the part of the face below the
+     * horizon, a circular segment cut off by a chord, so it is drawn as a
+     * single arc closed by that chord instead of masking bitmaps. Nothing is
+     * allocated here.
+     *
+     * @param canvas
+     */
+    private void drawFace(Canvas canvas) {
+        // The horizon moves from the bottom of the face at x = -1 to the top
+        // at x = 1. The arc starts where it meets the rim, measured
+        // clockwise from three o'clock.
+        float horizon = Math.max(-1, Math.min(1, -x));
+        float startAngle = (float) Math.toDegrees(Math.asin(horizon));
+        float sweepAngle = 180 - 2 * startAngle;
+
+        if (sweepAngle <= 0) {
+            return;
+        }
+
+        float scale = (float) width;
+        float angle = (float) -Math.toDegrees(y);
+
+        canvas.save();
+        canvas.scale(scale, scale);
+        canvas.rotate(angle, faceBackgroundRect.centerX(), faceBackgroundRect.centerY());
+        canvas.drawArc(faceBackgroundRect, startAngle, sweepAngle, false, skyPaint);
+        canvas.restore();
+    }
+
+    /**
+     * Draw the gauge bezel.
+     *
+     * @param canvas
+     */
+    private void drawBezel(Canvas canvas) {
+        if (bezelBitmap != null) {
+            canvas.drawBitmap(bezelBitmap, 0, 0, backgroundPaint);
+        }
+    }
+
+    /**
+     * Regenerate the background image. This should only be called when the size
+     * of the screen has changed. The background will be cached and can be
+     * reused without needing to redraw it.
+     */
+    private void regenerateBezel() {
+        // free the old bitmap
+        if (bezelBitmap != null) {
+            bezelBitmap.recycle();
+        }
+
+        bezelBitmap = Bitmap.createBitmap(width, height,
+                Bitmap.Config.ARGB_8888);
+        Canvas bezelCanvas = new Canvas(bezelBitmap);
+        float scale = (float) width;
+        bezelCanvas.scale(scale, scale);
+
+        drawRim(bezelCanvas);
+    }
+}
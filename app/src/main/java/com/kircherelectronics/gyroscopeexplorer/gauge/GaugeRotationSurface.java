@@ -0,0 +1,57 @@
+package com.kircherelectronics.gyroscopeexplorer.gauge;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The rotation gauge of {@link GaugeRotation}, drawn on a render thread.
+ */
+public class GaugeRotationSurface extends GaugeSurfaceView {
+
+    private final GaugeRotationRenderer renderer = new GaugeRotationRenderer();
+
+    public GaugeRotationSurface(Context context) {
+        super(context);
+    }
+
+    public GaugeRotationSurface(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public GaugeRotationSurface(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    @Override
+    protected void onRenderSizeChanged(int width, int height) {
+        renderer.setSize(width, height);
+    }
+
+    @Override
+    protected void onRenderOrientation(float[] orientation) {
+        renderer.setRotation(orientation[1], orientation[2]);
+    }
+
+    @Override
+    protected boolean onRender(Canvas canvas, long time) {
+        renderer.draw(canvas);
+        return false;
+    }
+}
@@ -0,0 +1,231 @@
+package com.kircherelectronics.gyroscopeexplorer.gauge;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.kircherelectronics.gyroscopeexplorer.sensor.OrientationSnapshot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A gauge that is drawn into a {@link SurfaceView} by its own render thread,
+ * so none of the rasterization happens on the main thread. The render thread
+ * reads the orientation straight from an {@link OrientationSnapshot} and only
+ * draws when there is a new orientation or the gauge is still animating.
+ * Posting a frame blocks until the display has a free buffer, which keeps the
+ * thread at the refresh rate of the display.
+ *
+ * The subclass callbacks are all made on the render thread.
+ */
+public abstract class GaugeSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    // How long the render thread waits between checks for a new orientation,
+    // and how long after a while without one
+    private static final long FRAME_INTERVAL = 16;
+    private static final long IDLE_INTERVAL = 100;
+    private static final int IDLE_FRAMES = 30;
+
+    private final int backgroundColor;
+
+    private volatile OrientationSnapshot snapshot;
+
+    private volatile int surfaceWidth;
+    private volatile int surfaceHeight;
+    private volatile boolean surfaceChanged = false;
+
+    private RenderThread renderThread;
+
+    public GaugeSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public GaugeSurfaceView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public GaugeSurfaceView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        // The surface is opaque, so paint the window background behind the
+        // gauge ourselves
+        TypedArray attributes = context.obtainStyledAttributes(new int[]{android.R.attr.colorBackground});
+        backgroundColor = attributes.getColor(0, Color.WHITE);
+        attributes.recycle();
+
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Set the orientation the gauge displays.
+     */
+    public void setOrientation(OrientationSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Called when the size of the surface has changed.
+     */
+    protected abstract void onRenderSizeChanged(int width, int height);
+
+    /**
+     * Called when a new orientation is available.
+     */
+    protected abstract void onRenderOrientation(float[] orientation);
+
+    /**
+     * Draw the gauge.
+     *
+     * @param canvas the canvas of the surface, already cleared.
+     * @param time   the time of the frame in milliseconds.
+     * @return true if the gauge is animating and should be drawn again on the
+     * next frame.
+     */
+    protected abstract boolean onRender(Canvas canvas, long time);
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+
+        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+        int chosenWidth = chooseDimension(widthMode, widthSize);
+        int chosenHeight = chooseDimension(heightMode, heightSize);
+
+        int chosenDimension = Math.min(chosenWidth, chosenHeight);
+
+        setMeasuredDimension(chosenDimension, chosenDimension);
+    }
+
+    private int chooseDimension(int mode, int size) {
+        if (mode == MeasureSpec.AT_MOST || mode == MeasureSpec.EXACTLY) {
+            return size;
+        } else { // (mode == MeasureSpec.UNSPECIFIED)
+            return getPreferredSize();
+        }
+    }
+
+    // in case there is no size specified
+    private int getPreferredSize() {
+        return 300;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new RenderThread(holder);
+        renderThread.start();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        surfaceChanged = true;
+
+        LockSupport.unpark(renderThread);
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // The surface must not be used once this returns
+        renderThread.quit();
+        renderThread = null;
+    }
+
+    private class RenderThread extends Thread {
+        private final SurfaceHolder holder;
+        private volatile boolean running = true;
+
+        RenderThread(SurfaceHolder holder) {
+            super(GaugeSurfaceView.this.getClass().getSimpleName());
+            this.holder = holder;
+        }
+
+        void quit() {
+            running = false;
+            LockSupport.unpark(this);
+
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+
+            float[] orientation = new float[3];
+            long lastSequence = -1;
+            boolean sized = false;
+            boolean dirty = true;
+            boolean animating = false;
+            int idleFrames = 0;
+
+            while (running) {
+                if (surfaceChanged) {
+                    surfaceChanged = false;
+                    onRenderSizeChanged(surfaceWidth, surfaceHeight);
+                    sized = true;
+                    dirty = true;
+                }
+
+                OrientationSnapshot snapshot = GaugeSurfaceView.this.snapshot;
+
+                if (snapshot != null && snapshot.getSequence() != lastSequence) {
+                    lastSequence = snapshot.read(orientation);
+                    onRenderOrientation(orientation);
+                    dirty = true;
+                }
+
+                if (sized && (dirty || animating)) {
+                    Canvas canvas = holder.lockCanvas();
+
+                    if (canvas != null) {
+                        try {
+                            canvas.drawColor(backgroundColor);
+                            animating = onRender(canvas, SystemClock.uptimeMillis());
+                        } finally {
+                            holder.unlockCanvasAndPost(canvas);
+                        }
+
+                        dirty = false;
+                    }
+
+                    idleFrames = 0;
+                } else {
+                    idleFrames++;
+
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(
+                            idleFrames < IDLE_FRAMES ? FRAME_INTERVAL : IDLE_INTERVAL));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.BinaryLogFormat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads sessions logged in the {@link BinaryLogFormat}.
+ */
+public class BinarySessionReader extends SessionReader
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileInputStream inputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final BinaryLogFormat.Header header;
+
+    private long timestamp;
+
+    public BinarySessionReader(File file) throws IOException
+    {
+        inputStream = new FileInputStream(file);
+        channel = inputStream.getChannel();
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        fill();
+        header = BinaryLogFormat.readHeader(buffer);
+    }
+
+    public BinaryLogFormat.Header getHeader()
+    {
+        return header;
+    }
+
+    @Override
+    public boolean next(float[] values) throws IOException
+    {
+        if (buffer.remaining() < BinaryLogFormat.RECORD_SIZE)
+        {
+            buffer.compact();
+            fill();
+
+            if (buffer.remaining() < BinaryLogFormat.RECORD_SIZE)
+            {
+                return false;
+            }
+        }
+
+        if (BinaryLogFormat.isUnwritten(buffer))
+        {
+            // The rest of the file was preallocated but never written
+            return false;
+        }
+
+        timestamp = buffer.getLong();
+        values[0] = buffer.getFloat();
+        values[1] = buffer.getFloat();
+        values[2] = buffer.getFloat();
+
+        return true;
+    }
+
+    @Override
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+        inputStream.close();
+    }
+
+    /**
+     * Fill the buffer from the channel and flip it for reading.
+     */
+    private void fill() throws IOException
+    {
+        while (buffer.hasRemaining() && channel.read(buffer) > 0)
+        {
+            // Keep reading until the buffer is full or the file ends
+        }
+
+        buffer.flip();
+    }
+}
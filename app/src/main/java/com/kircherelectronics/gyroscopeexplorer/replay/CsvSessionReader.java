@@ -0,0 +1,88 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads sessions logged as CSV with a Timestamp, X, Y and Z column, the
+ * timestamp in seconds.
+ */
+public class CsvSessionReader extends SessionReader
+{
+    private final CSVParser parser;
+    private final Iterator<CSVRecord> records;
+
+    private long timestamp;
+
+    public CsvSessionReader(File file) throws IOException
+    {
+        InputStream inputStream = new FileInputStream(file);
+
+        if (file.getName().endsWith(".gz"))
+        {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+
+        parser = new CSVParser(new BufferedReader(new InputStreamReader(inputStream)),
+                CSVFormat.DEFAULT.withFirstRecordAsHeader());
+        records = parser.iterator();
+    }
+
+    @Override
+    public boolean next(float[] values) throws IOException
+    {
+        if (!records.hasNext())
+        {
+            return false;
+        }
+
+        CSVRecord record = records.next();
+
+        timestamp = (long) (Double.parseDouble(record.get(0)) * 1000000000L);
+
+        for (int i = 0; i < 3; i++)
+        {
+            values[i] = Float.parseFloat(record.get(i + 1));
+        }
+
+        return true;
+    }
+
+    @Override
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        parser.close();
+    }
+}
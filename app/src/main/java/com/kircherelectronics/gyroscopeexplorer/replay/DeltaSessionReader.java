@@ -0,0 +1,77 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DeltaLogFormat;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads sessions logged in the compressed {@link DeltaLogFormat}.
+ */
+public class DeltaSessionReader extends SessionReader
+{
+    private final InputStream inputStream;
+    private final DeltaLogFormat.Header header;
+    private final DeltaLogFormat.Decoder decoder;
+
+    private long timestamp;
+
+    public DeltaSessionReader(File file) throws IOException
+    {
+        inputStream = new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)));
+        header = DeltaLogFormat.readHeader(inputStream);
+        decoder = new DeltaLogFormat.Decoder(inputStream, header.quantum);
+    }
+
+    public DeltaLogFormat.Header getHeader()
+    {
+        return header;
+    }
+
+    @Override
+    public boolean next(float[] values) throws IOException
+    {
+        try
+        {
+            timestamp = decoder.decode(values);
+        } catch (EOFException e)
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        inputStream.close();
+    }
+}
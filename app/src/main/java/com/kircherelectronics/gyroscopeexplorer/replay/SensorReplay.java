@@ -0,0 +1,226 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import com.kircherelectronics.fsensor.observer.SensorSubject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Replays a logged session through the same {@link SensorSubject.SensorObserver}
+ * interface as the live FSensor, so the rest of the pipeline can't tell the
+ * difference. Samples are emitted in real time, scaled by a speed factor, or
+ * as fast as possible. Replay does not depend on Android and can run on a
+ * plain JVM for regression tests and throughput measurements.
+ *
+ * The values array passed to the observers is reused for every sample,
+ * observers that keep the values must copy them.
+ */
+public class SensorReplay implements Runnable
+{
+    /**
+     * Emit the samples without any pacing.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final File file;
+    private final CopyOnWriteArrayList<SensorSubject.SensorObserver> observers = new CopyOnWriteArrayList<>();
+    private final float[] values = new float[3];
+
+    private double speed = 1;
+
+    private volatile boolean running = false;
+    private volatile long timestamp;
+    private volatile long samples;
+
+    private Thread thread;
+
+    /**
+     * Create a new instance.
+     *
+     * @param file a CSV, binary or compressed session log.
+     */
+    public SensorReplay(File file)
+    {
+        this.file = file;
+    }
+
+    public void register(SensorSubject.SensorObserver sensorObserver)
+    {
+        observers.addIfAbsent(sensorObserver);
+    }
+
+    public void unregister(SensorSubject.SensorObserver sensorObserver)
+    {
+        observers.remove(sensorObserver);
+    }
+
+    /**
+     * Set the replay speed.
+     *
+     * @param speed 1 for real time, N for N times real time or
+     *              {@link #AS_FAST_AS_POSSIBLE}.
+     */
+    public void setSpeed(double speed)
+    {
+        if (!(speed > 0))
+        {
+            throw new IllegalArgumentException("Speed must be positive!");
+        }
+
+        this.speed = speed;
+    }
+
+    /**
+     * Replay the session on a new thread.
+     */
+    public void start()
+    {
+        if (thread != null)
+        {
+            throw new IllegalStateException("Replay is already started!");
+        }
+
+        running = true;
+        thread = new Thread(this, SensorReplay.class.getSimpleName());
+        thread.start();
+    }
+
+    /**
+     * Stop the replay and wait for the replay thread to finish.
+     */
+    public void stop()
+    {
+        running = false;
+
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+
+            try
+            {
+                thread.join();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            thread = null;
+        }
+    }
+
+    /**
+     * Replay the session on the calling thread. Returns once every sample has
+     * been emitted or {@link #stop()} was called.
+     */
+    @Override
+    public void run()
+    {
+        // start() has already set the flag for its thread, setting it again
+        // would undo a stop() that came before the thread got here
+        if (Thread.currentThread() != thread)
+        {
+            running = true;
+        }
+
+        samples = 0;
+
+        SessionReader reader = null;
+
+        try
+        {
+            reader = SessionReader.open(file);
+
+            long firstTimestamp = 0;
+            long startTime = System.nanoTime();
+
+            while (running && reader.next(values))
+            {
+                timestamp = reader.getTimestamp();
+
+                if (samples == 0)
+                {
+                    firstTimestamp = timestamp;
+                }
+
+                if (speed != AS_FAST_AS_POSSIBLE)
+                {
+                    waitUntil(startTime + (long) ((timestamp - firstTimestamp) / speed));
+                }
+
+                for (int i = 0; i < observers.size(); i++)
+                {
+                    observers.get(i).onSensorChanged(values);
+                }
+
+                samples++;
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        } finally
+        {
+            running = false;
+
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                } catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return the logged timestamp of the sample being emitted in nanoseconds
+     * since the start of the session.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of samples emitted so far.
+     */
+    public long getSampleCount()
+    {
+        return samples;
+    }
+
+    private void waitUntil(long time)
+    {
+        long remaining;
+
+        while (running && (remaining = time - System.nanoTime()) > 0)
+        {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+}
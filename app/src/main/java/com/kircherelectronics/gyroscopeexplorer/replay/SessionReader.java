@@ -0,0 +1,85 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads the samples of a logged session in order.
+ */
+public abstract class SessionReader implements Closeable
+{
+    /**
+     * Open a session log, picking the reader from the content of the file.
+     * CSV, compressed CSV, binary and compressed delta logs are supported.
+     *
+     * @param file the log.
+     * @return a reader positioned at the first sample.
+     * @throws IOException if the file can't be read.
+     */
+    public static SessionReader open(File file) throws IOException
+    {
+        if (file.getName().endsWith(".csv.gz"))
+        {
+            return new CsvSessionReader(file);
+        }
+
+        FileInputStream inputStream = new FileInputStream(file);
+        int first;
+        int second;
+
+        try
+        {
+            first = inputStream.read();
+            second = inputStream.read();
+        } finally
+        {
+            inputStream.close();
+        }
+
+        if (first == 0x1f && second == 0x8b)
+        {
+            return new DeltaSessionReader(file);
+        }
+
+        // The binary magic starts with "GE", CSV starts with the "Timestamp" header
+        if (first == 'G' && second == 'E')
+        {
+            return new BinarySessionReader(file);
+        }
+
+        return new CsvSessionReader(file);
+    }
+
+    /**
+     * Read the next sample.
+     *
+     * @param values receives the x, y and z values.
+     * @return false at the end of the session.
+     * @throws IOException if the log can't be read.
+     */
+    public abstract boolean next(float[] values) throws IOException;
+
+    /**
+     * @return the timestamp of the last sample read in nanoseconds since the
+     * start of the session.
+     */
+    public abstract long getTimestamp();
+}
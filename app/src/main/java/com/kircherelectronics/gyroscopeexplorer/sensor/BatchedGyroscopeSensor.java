@@ -0,0 +1,354 @@
+package com.kircherelectronics.gyroscopeexplorer.sensor;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.kircherelectronics.gyroscopeexplorer.filter.GyroscopeBiasEstimator;
+import com.kircherelectronics.gyroscopeexplorer.fusion.Quaternions;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Integrates the gyroscope into an orientation with the sensor registered for
+ * hardware batching. The events are held in the sensor hub's FIFO for up to
+ * the maximum report latency and delivered in bursts, so the application
+ * processor can sleep between them. Used to keep logging with the screen off.
+ *
+ * FSensor registers its sensors without a report latency, so it can't batch.
+ * This integrates the gyroscope the same way FSensor's gyroscope only mode
+ * does, starting from the last orientation of the fused sensor, and feeds the
+ * {@link SensorProcessor} with the sensor timestamps of the events rather
+ * than the time they were delivered.
+ */
+public class BatchedGyroscopeSensor
+{
+    private static final String TAG = BatchedGyroscopeSensor.class.getSimpleName();
+
+    /**
+     * The mode name recorded in the log header for the samples this
+     * integrates.
+     */
+    public static final String MODE = "LOW_POWER_GYROSCOPE_ONLY";
+
+    // The most events a batch may hold. Half the sample queues, which leaves
+    // room for a sensor that runs faster than it was asked to and for
+    // queues that are not empty when a batch arrives.
+    private static final int MAX_BATCH_SIZE = SensorProcessor.SAMPLE_QUEUE_CAPACITY / 2;
+
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    // How long stop() waits for the FIFO to be flushed
+    private static final long FLUSH_TIMEOUT = 500;
+
+    private final SensorManager sensorManager;
+    private final SensorProcessor sensorProcessor;
+
+    private final SensorEventListener listener;
+
+    private int samplingPeriodUs = SensorManager.SENSOR_DELAY_FASTEST;
+    private int maxReportLatencyUs = 0;
+
+    // The rotation of the device as a quaternion, w, x, y and z
+    private final float[] rotation = new float[4];
+    private final float[] orientation = new float[3];
+
+    private long lastTimestamp = 0;
+
+    private final GyroscopeBiasEstimator biasEstimator = new GyroscopeBiasEstimator();
+    private final float[] rates = new float[3];
+    private CalibrationCache calibrationCache;
+    private Sensor gyroscope;
+
+    private HandlerThread thread;
+    private volatile CountDownLatch flushLatch;
+
+    public BatchedGyroscopeSensor(Context context, SensorProcessor sensorProcessor)
+    {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.sensorProcessor = sensorProcessor;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+        {
+            listener = new FlushListener();
+        }
+        else
+        {
+            listener = new Listener();
+        }
+    }
+
+    /**
+     * Set the sampling period in microseconds, 0 for as fast as possible.
+     */
+    public void setSamplingPeriod(int samplingPeriodUs)
+    {
+        this.samplingPeriodUs = samplingPeriodUs;
+    }
+
+    /**
+     * Set the longest time in microseconds an event may wait in the hardware
+     * FIFO before it is delivered, 0 to deliver every event as it arrives.
+     * The latency is capped so a whole batch fits the sample queues, to about
+     * ten seconds at 200 Hz.
+     */
+    public void setMaxReportLatency(int maxReportLatencyUs)
+    {
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    /**
+     * Estimate and remove the bias of the gyroscope, starting from the bias
+     * saved in the cache and saving it there when the sensor stops. The
+     * device lies still for long stretches while logging with the screen
+     * off, which is when the estimate improves most.
+     *
+     * @param calibrationCache the cache, or null to use the rates as they are.
+     */
+    public void setBiasCorrection(CalibrationCache calibrationCache)
+    {
+        this.calibrationCache = calibrationCache;
+    }
+
+    /**
+     * Start integrating from an orientation.
+     *
+     * @param initialOrientation the azimuth, pitch and roll in radians, as
+     *                           returned by {@link SensorManager#getOrientation}.
+     * @return false if the device has no gyroscope.
+     */
+    public boolean start(float[] initialOrientation)
+    {
+        if (thread != null)
+        {
+            throw new IllegalStateException("Sensor is already started!");
+        }
+
+        Sensor sensor = getGyroscope();
+
+        if (sensor == null)
+        {
+            return false;
+        }
+
+        Quaternions.fromOrientation(initialOrientation, rotation);
+        lastTimestamp = 0;
+
+        gyroscope = sensor;
+
+        if (calibrationCache != null)
+        {
+            biasEstimator.reset();
+            calibrationCache.load(sensor, biasEstimator);
+        }
+
+        thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        Handler handler = new Handler(thread.getLooper());
+
+        int latencyUs = getMaxReportLatency(sensor);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+        {
+            sensorManager.registerListener(listener, sensor, samplingPeriodUs, latencyUs, handler);
+        }
+        else
+        {
+            sensorManager.registerListener(listener, sensor, samplingPeriodUs, handler);
+        }
+
+        Log.d(TAG, "Batching " + sensor.getName() + " up to " + latencyUs + " us");
+
+        return true;
+    }
+
+    /**
+     * Stop the sensor, delivering any events still held in the FIFO first.
+     */
+    public void stop()
+    {
+        if (thread == null)
+        {
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && maxReportLatencyUs > 0)
+        {
+            flush();
+        }
+
+        sensorManager.unregisterListener(listener);
+        thread.quit();
+
+        try
+        {
+            thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        thread = null;
+
+        if (calibrationCache != null)
+        {
+            calibrationCache.save(gyroscope, biasEstimator);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void flush()
+    {
+        flushLatch = new CountDownLatch(1);
+
+        if (sensorManager.flush(listener))
+        {
+            try
+            {
+                if (!flushLatch.await(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS))
+                {
+                    Log.w(TAG, "Timed out flushing the sensor");
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushLatch = null;
+    }
+
+    /**
+     * @return the report latency capped to {@link #MAX_BATCH_SIZE} events.
+     */
+    private int getMaxReportLatency(Sensor sensor)
+    {
+        // As fast as possible is the fastest rate of the sensor
+        int periodUs = samplingPeriodUs > 0 ? samplingPeriodUs : sensor.getMinDelay();
+
+        if (periodUs <= 0)
+        {
+            // The rate is unknown, so the size of a batch is too
+            return 0;
+        }
+
+        return (int) Math.min(maxReportLatencyUs, (long) periodUs * MAX_BATCH_SIZE);
+    }
+
+    private Sensor getGyroscope()
+    {
+        // A wake-up sensor wakes the application processor before its FIFO
+        // overflows, a non wake-up sensor drops events while it sleeps
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+        {
+            Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE, true);
+
+            if (sensor != null)
+            {
+                return sensor;
+            }
+        }
+
+        return sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+    }
+
+    private void onGyroscopeChanged(SensorEvent event)
+    {
+        float[] values = event.values;
+
+        if (calibrationCache != null)
+        {
+            values = biasEstimator.filter(values, event.timestamp, rates);
+        }
+
+        if (lastTimestamp != 0)
+        {
+            float dT = (event.timestamp - lastTimestamp) * NS2S;
+
+            Quaternions.integrate(rotation, values[0], values[1], values[2], dT, rotation);
+        }
+
+        lastTimestamp = event.timestamp;
+
+        Quaternions.toOrientation(rotation, orientation);
+
+        sensorProcessor.offer(toNanoTime(event.timestamp), orientation);
+    }
+
+    /**
+     * Sensor timestamps count from boot like {@link SystemClock#elapsedRealtimeNanos()},
+     * the rest of the pipeline uses {@link System#nanoTime()}. The offset is
+     * taken per event since the two drift apart while the device sleeps.
+     */
+    private static long toNanoTime(long timestamp)
+    {
+        long elapsedRealtimeNanos;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+        {
+            elapsedRealtimeNanos = SystemClock.elapsedRealtimeNanos();
+        }
+        else
+        {
+            elapsedRealtimeNanos = SystemClock.elapsedRealtime() * 1000000L;
+        }
+
+        return timestamp + System.nanoTime() - elapsedRealtimeNanos;
+    }
+
+    private class Listener implements SensorEventListener
+    {
+        @Override
+        public void onSensorChanged(SensorEvent event)
+        {
+            onGyroscopeChanged(event);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy)
+        {
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private class FlushListener extends Listener implements SensorEventListener2
+    {
+        @Override
+        public void onFlushCompleted(Sensor sensor)
+        {
+            CountDownLatch latch = flushLatch;
+
+            if (latch != null)
+            {
+                latch.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.kircherelectronics.gyroscopeexplorer.sensor;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.hardware.Sensor;
+import android.os.Build;
+
+import com.kircherelectronics.gyroscopeexplorer.filter.GyroscopeBiasEstimator;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Keeps the gyroscope bias between runs, so the sensor starts out calibrated
+ * instead of waiting for the device to be still. The bias is kept per device
+ * and sensor, since a restored backup or a different gyroscope on the same
+ * device has a bias of its own.
+ */
+public class CalibrationCache
+{
+    private static final String PREFERENCES_NAME = "gyroscope_calibration";
+
+    private final SharedPreferences preferences;
+
+    public CalibrationCache(Context context)
+    {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Start an estimator from the bias saved for a sensor.
+     *
+     * @return false if no bias was saved for the sensor.
+     */
+    public boolean load(Sensor sensor, GyroscopeBiasEstimator estimator)
+    {
+        String key = getKey(sensor);
+
+        if (!preferences.contains(key + ".x"))
+        {
+            return false;
+        }
+
+        float[] bias = new float[3];
+        bias[0] = preferences.getFloat(key + ".x", 0);
+        bias[1] = preferences.getFloat(key + ".y", 0);
+        bias[2] = preferences.getFloat(key + ".z", 0);
+
+        estimator.setBias(bias);
+
+        return true;
+    }
+
+    /**
+     * Save the bias of an estimator for a sensor, if it has confirmed one.
+     * A bias that was only loaded is left as it is.
+     */
+    public void save(Sensor sensor, GyroscopeBiasEstimator estimator)
+    {
+        if (!estimator.isConfirmed())
+        {
+            return;
+        }
+
+        String key = getKey(sensor);
+
+        float[] bias = new float[3];
+        estimator.getBias(bias);
+
+        preferences.edit()
+                .putFloat(key + ".x", bias[0])
+                .putFloat(key + ".y", bias[1])
+                .putFloat(key + ".z", bias[2])
+                .apply();
+    }
+
+    /**
+     * Forget the bias saved for a sensor.
+     */
+    public void clear(Sensor sensor)
+    {
+        String key = getKey(sensor);
+
+        preferences.edit()
+                .remove(key + ".x")
+                .remove(key + ".y")
+                .remove(key + ".z")
+                .apply();
+    }
+
+    private static String getKey(Sensor sensor)
+    {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/" + sensor.getVendor() + "/" + sensor.getName()
+                + "/" + sensor.getVersion();
+    }
+}
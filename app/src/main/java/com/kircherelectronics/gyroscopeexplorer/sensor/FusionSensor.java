@@ -0,0 +1,293 @@
+package com.kircherelectronics.gyroscopeexplorer.sensor;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.kircherelectronics.fsensor.observer.SensorSubject;
+import com.kircherelectronics.fsensor.sensor.FSensor;
+import com.kircherelectronics.gyroscopeexplorer.filter.GyroscopeBiasEstimator;
+import com.kircherelectronics.gyroscopeexplorer.fusion.OrientationFusion;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An {@link FSensor} backed by an in-project {@link OrientationFusion}
+ * instead of FSensor's gyroscope sensors, so the cost of every sample is
+ * under our control. The sensors are delivered on a thread of their own
+ * rather than the main thread, and the observers are called there.
+ */
+public class FusionSensor implements FSensor
+{
+    private static final String TAG = FusionSensor.class.getSimpleName();
+
+    private final SensorManager sensorManager;
+    private final OrientationFusion fusion;
+    private final SensorEventListener listener = new Listener();
+
+    private final float[] orientation = new float[3];
+
+    // Where the next start carries on from, if anywhere
+    private final float[] initialOrientation = new float[3];
+    private boolean hasInitialOrientation = false;
+
+    private final GyroscopeBiasEstimator biasEstimator = new GyroscopeBiasEstimator();
+    private final float[] rates = new float[3];
+    private CalibrationCache calibrationCache;
+    private Sensor gyroscope;
+
+    // Copied on write, so notifying the observers doesn't allocate
+    private volatile SensorSubject.SensorObserver[] observers = new SensorSubject.SensorObserver[0];
+
+    private int sensorDelay = SensorManager.SENSOR_DELAY_FASTEST;
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    private final Runnable resetRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            fusion.reset();
+            resetBiasCorrection();
+        }
+    };
+
+    /**
+     * @param fusion the fusion, which belongs to the sensor from now on.
+     */
+    public FusionSensor(Context context, OrientationFusion fusion)
+    {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.fusion = fusion;
+    }
+
+    /**
+     * @param sensorDelay a SensorManager delay or a sampling period in
+     *                    microseconds. Set it before starting the sensor.
+     */
+    public void setSensorDelay(int sensorDelay)
+    {
+        this.sensorDelay = sensorDelay;
+    }
+
+    /**
+     * Carry on from an orientation when the sensor starts, instead of
+     * starting over from the accelerometer and magnetometer. Set it before
+     * starting the sensor, it is used by the next start only.
+     *
+     * @param orientation the azimuth, pitch and roll in radians.
+     */
+    public void setInitialOrientation(float[] orientation)
+    {
+        System.arraycopy(orientation, 0, initialOrientation, 0, 3);
+        hasInitialOrientation = true;
+    }
+
+    /**
+     * Estimate and remove the bias of the gyroscope, starting from the bias
+     * saved in the cache and saving it there when the sensor stops. Set it
+     * before starting the sensor.
+     *
+     * @param calibrationCache the cache, or null to use the rates as they are.
+     */
+    public void setBiasCorrection(CalibrationCache calibrationCache)
+    {
+        this.calibrationCache = calibrationCache;
+    }
+
+    @Override
+    public synchronized void register(SensorSubject.SensorObserver sensorObserver)
+    {
+        SensorSubject.SensorObserver[] registered = new SensorSubject.SensorObserver[observers.length + 1];
+        System.arraycopy(observers, 0, registered, 0, observers.length);
+        registered[observers.length] = sensorObserver;
+        observers = registered;
+    }
+
+    @Override
+    public synchronized void unregister(SensorSubject.SensorObserver sensorObserver)
+    {
+        for (int i = 0; i < observers.length; i++)
+        {
+            if (observers[i] == sensorObserver)
+            {
+                SensorSubject.SensorObserver[] registered = new SensorSubject.SensorObserver[observers.length - 1];
+                System.arraycopy(observers, 0, registered, 0, i);
+                System.arraycopy(observers, i + 1, registered, i, observers.length - i - 1);
+                observers = registered;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void start()
+    {
+        if (thread != null)
+        {
+            throw new IllegalStateException("Sensor is already started!");
+        }
+
+        fusion.reset();
+
+        if (hasInitialOrientation)
+        {
+            fusion.setOrientation(initialOrientation);
+            hasInitialOrientation = false;
+        }
+
+        gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+
+        if (calibrationCache != null)
+        {
+            biasEstimator.reset();
+
+            if (gyroscope != null)
+            {
+                calibrationCache.load(gyroscope, biasEstimator);
+            }
+        }
+
+        thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        registerListener(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
+        registerListener(sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD));
+        registerListener(gyroscope);
+    }
+
+    @Override
+    public void stop()
+    {
+        if (thread == null)
+        {
+            return;
+        }
+
+        sensorManager.unregisterListener(listener);
+        thread.quit();
+
+        try
+        {
+            thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        thread = null;
+        handler = null;
+
+        // The sensor thread is gone, so the estimator is ours again
+        if (calibrationCache != null && gyroscope != null)
+        {
+            calibrationCache.save(gyroscope, biasEstimator);
+        }
+    }
+
+    @Override
+    public void reset()
+    {
+        Handler handler = this.handler;
+
+        if (handler != null)
+        {
+            // The fusion belongs to the sensor thread
+            handler.post(resetRunnable);
+        }
+        else
+        {
+            fusion.reset();
+            resetBiasCorrection();
+        }
+    }
+
+    /**
+     * Start estimating the bias from scratch, and forget the saved one so it
+     * isn't loaded again.
+     */
+    private void resetBiasCorrection()
+    {
+        CalibrationCache calibrationCache = this.calibrationCache;
+
+        if (calibrationCache != null)
+        {
+            biasEstimator.reset();
+
+            if (gyroscope != null)
+            {
+                calibrationCache.clear(gyroscope);
+            }
+        }
+    }
+
+    private void registerListener(Sensor sensor)
+    {
+        sensorManager.registerListener(listener, sensor, sensorDelay, handler);
+    }
+
+    private void onGyroscopeChanged(SensorEvent event)
+    {
+        float[] values = event.values;
+
+        if (calibrationCache != null)
+        {
+            values = biasEstimator.filter(values, event.timestamp, rates);
+        }
+
+        if (fusion.setGyroscope(values, event.timestamp, orientation))
+        {
+            for (SensorSubject.SensorObserver observer : observers)
+            {
+                observer.onSensorChanged(orientation);
+            }
+        }
+    }
+
+    private class Listener implements SensorEventListener
+    {
+        @Override
+        public void onSensorChanged(SensorEvent event)
+        {
+            switch (event.sensor.getType())
+            {
+                case Sensor.TYPE_ACCELEROMETER:
+                    fusion.setAcceleration(event.values);
+                    break;
+                case Sensor.TYPE_MAGNETIC_FIELD:
+                    fusion.setMagnetic(event.values);
+                    break;
+                case Sensor.TYPE_GYROSCOPE:
+                    onGyroscopeChanged(event);
+                    break;
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy)
+        {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.kircherelectronics.gyroscopeexplorer.sensor;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Holds the latest orientation sample for one writer thread and any number
+ * of reader threads, without locks or allocation. It is a sequence lock: the
+ * writer makes the sequence odd while it updates the fields and even again
+ * when it is done, and a reader retries until it has read the fields
+ * between two equal, even sequences. Readers therefore always see the x, y
+ * and z of one and the same sample.
+ */
+public class OrientationSnapshot
+{
+    // Odd while the writer is updating the fields. The fields are volatile
+    // too, so reads of them can't be reordered past the second read of the
+    // sequence.
+    private volatile long sequence = 0;
+
+    private volatile long timestamp;
+    private volatile float x;
+    private volatile float y;
+    private volatile float z;
+
+    /**
+     * Publish a sample. Must only be called from the writer thread.
+     *
+     * @param timestamp the timestamp of the sample in nanoseconds.
+     * @param values    the x, y and z values of the sample.
+     */
+    public void publish(long timestamp, float[] values)
+    {
+        long s = sequence;
+
+        sequence = s + 1;
+
+        this.timestamp = timestamp;
+        x = values[0];
+        y = values[1];
+        z = values[2];
+
+        sequence = s + 2;
+    }
+
+    /**
+     * @return the number of samples published so far. A reader can compare
+     * it with the value returned by a previous read to tell if there is a
+     * new sample.
+     */
+    public long getSequence()
+    {
+        return sequence >>> 1;
+    }
+
+    /**
+     * Copy the latest sample.
+     *
+     * @param values receives the x, y and z values, left unchanged if
+     *               nothing has been published yet.
+     * @return the sequence of the sample read, 0 if nothing has been
+     * published yet.
+     */
+    public long read(float[] values)
+    {
+        return read(null, values);
+    }
+
+    /**
+     * Copy the latest sample.
+     *
+     * @param timestamp receives the timestamp of the sample at index 0, may
+     *                  be null.
+     * @param values    receives the x, y and z values, left unchanged if
+     *                  nothing has been published yet.
+     * @return the sequence of the sample read, 0 if nothing has been
+     * published yet.
+     */
+    public long read(long[] timestamp, float[] values)
+    {
+        while (true)
+        {
+            long s = sequence;
+
+            if (s == 0)
+            {
+                return 0;
+            }
+
+            if ((s & 1) == 0)
+            {
+                long t = this.timestamp;
+                float x = this.x;
+                float y = this.y;
+                float z = this.z;
+
+                if (sequence == s)
+                {
+                    if (timestamp != null)
+                    {
+                        timestamp[0] = t;
+                    }
+
+                    values[0] = x;
+                    values[1] = y;
+                    values[2] = z;
+
+                    return s >>> 1;
+                }
+            }
+
+            // The writer is in the middle of an update, it only takes a few
+            // stores so spin instead of yielding
+        }
+    }
+}
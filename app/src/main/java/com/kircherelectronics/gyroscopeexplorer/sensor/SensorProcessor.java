@@ -0,0 +1,283 @@
+package com.kircherelectronics.gyroscopeexplorer.sensor;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.kircherelectronics.fsensor.filter.averaging.MeanFilter;
+import com.kircherelectronics.fsensor.observer.SensorSubject;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerManager;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.SampleQueue;
+import com.kircherelectronics.gyroscopeexplorer.filter.SlidingWindowMeanFilter;
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyMonitor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Filters and logs the orientation on a dedicated thread with its own
+ * {@link android.os.Looper}, away from the main thread that draws the gauges.
+ *
+ * FSensor delivers its samples on the main thread, so the observer only
+ * copies each sample into a bounded queue and wakes the processing thread.
+ * The processing thread smooths the sample, hands it to the data logger and
+ * publishes the result to an {@link OrientationSnapshot}. The UI reads the
+ * latest orientation from the snapshot and never waits on the processing
+ * thread.
+ */
+public class SensorProcessor implements SensorSubject.SensorObserver
+{
+    private static final String TAG = SensorProcessor.class.getSimpleName();
+
+    public static final String MEAN_FILTER_FSENSOR = "fsensor";
+    public static final String MEAN_FILTER_SLIDING_WINDOW = "sliding_window";
+
+    // Twenty seconds of samples at 200 Hz. BatchedGyroscopeSensor caps its
+    // batches to half of this, so a whole batch fits while the processing
+    // thread catches up.
+    static final int SAMPLE_QUEUE_CAPACITY = 4096;
+
+    private final DataLoggerManager dataLogger;
+    private final MeanFilter meanFilter;
+    private final SlidingWindowMeanFilter slidingWindowMeanFilter;
+    private final float[] filteredValues = new float[3];
+
+    private final SampleQueue sampleQueue;
+    private final long[] sampleTimestamp = new long[1];
+    private final float[] sampleValues = new float[3];
+
+    // Set while a drain is posted to the processing thread, so the observer
+    // posts at most one message no matter how many samples arrive
+    private final AtomicBoolean drainPending = new AtomicBoolean(false);
+
+    private final Runnable drainRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            drainPending.set(false);
+            drainSamples();
+        }
+    };
+
+    private volatile boolean meanFilterEnabled = false;
+    private volatile boolean slidingWindowEnabled = false;
+    private volatile boolean logData = false;
+
+    private final OrientationSnapshot orientation = new OrientationSnapshot();
+
+    private volatile LatencyMonitor latencyMonitor;
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    public SensorProcessor(DataLoggerManager dataLogger)
+    {
+        this.dataLogger = dataLogger;
+
+        meanFilter = new MeanFilter();
+        slidingWindowMeanFilter = new SlidingWindowMeanFilter();
+        sampleQueue = new SampleQueue(SAMPLE_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Start the processing thread.
+     */
+    public void start()
+    {
+        if (thread != null)
+        {
+            throw new IllegalStateException("Processor is already started!");
+        }
+
+        sampleQueue.clear();
+
+        thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Stop the processing thread. Samples still queued are discarded.
+     */
+    public void stop()
+    {
+        if (thread != null)
+        {
+            handler.removeCallbacksAndMessages(null);
+            thread.quit();
+
+            try
+            {
+                thread.join();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            thread = null;
+            handler = null;
+            drainPending.set(false);
+
+            if (sampleQueue.getDropped() > 0)
+            {
+                Log.w(TAG, "Dropped " + sampleQueue.getDropped() + " samples");
+            }
+        }
+    }
+
+    /**
+     * Enable the mean filter. Set the time constant before the processing
+     * thread is started.
+     */
+    public void setMeanFilterEnabled(boolean meanFilterEnabled)
+    {
+        this.meanFilterEnabled = meanFilterEnabled;
+    }
+
+    public void setMeanFilterTimeConstant(float timeConstant)
+    {
+        meanFilter.setTimeConstant(timeConstant);
+        slidingWindowMeanFilter.setTimeConstant(timeConstant);
+    }
+
+    /**
+     * Choose the mean filter, FSensor's {@link MeanFilter} or the
+     * {@link SlidingWindowMeanFilter}.
+     *
+     * @param type {@link #MEAN_FILTER_FSENSOR} or {@link #MEAN_FILTER_SLIDING_WINDOW}.
+     */
+    public void setMeanFilterType(String type)
+    {
+        slidingWindowEnabled = MEAN_FILTER_SLIDING_WINDOW.equals(type);
+    }
+
+    /**
+     * Hand the processed samples to the data logger.
+     */
+    public void setLogData(boolean logData)
+    {
+        this.logData = logData;
+    }
+
+    /**
+     * Record how long each sample takes to be published, and the samples
+     * dropped on the way.
+     *
+     * @param latencyMonitor the monitor, or null to record nothing.
+     */
+    public void setLatencyMonitor(LatencyMonitor latencyMonitor)
+    {
+        this.latencyMonitor = latencyMonitor;
+    }
+
+    /**
+     * @return the latest processed orientation, may be read from any thread.
+     */
+    public OrientationSnapshot getOrientation()
+    {
+        return orientation;
+    }
+
+    /**
+     * Called by FSensor on the main thread.
+     */
+    @Override
+    public void onSensorChanged(float[] values)
+    {
+        offer(System.nanoTime(), values);
+    }
+
+    /**
+     * Queue a sample for the processing thread. Samples must be offered from
+     * one thread at a time.
+     *
+     * @param timestamp the {@link System#nanoTime()} the sample was measured.
+     * @param values    the x, y and z orientation.
+     */
+    public void offer(long timestamp, float[] values)
+    {
+        Handler handler = this.handler;
+
+        if (handler == null)
+        {
+            return;
+        }
+
+        if (!sampleQueue.offer(timestamp, values))
+        {
+            LatencyMonitor latencyMonitor = this.latencyMonitor;
+
+            if (latencyMonitor != null)
+            {
+                latencyMonitor.countProcessorDropped();
+            }
+        }
+
+        if (drainPending.compareAndSet(false, true))
+        {
+            handler.post(drainRunnable);
+        }
+    }
+
+    /**
+     * Filter, log and publish one sample. Runs on the processing thread, and
+     * can be called directly to drive the pipeline without a looper.
+     *
+     * @param values    the x, y and z orientation.
+     * @param timestamp the {@link System#nanoTime()} the sample was received.
+     */
+    public void process(float[] values, long timestamp)
+    {
+        float[] fusedOrientation = values;
+        if (meanFilterEnabled)
+        {
+            if (slidingWindowEnabled)
+            {
+                fusedOrientation = slidingWindowMeanFilter.filter(fusedOrientation, timestamp, filteredValues);
+            }
+            else
+            {
+                fusedOrientation = meanFilter.filter(fusedOrientation);
+            }
+        }
+
+        if (logData)
+        {
+            dataLogger.setRotation(fusedOrientation, timestamp);
+        }
+
+        orientation.publish(timestamp, fusedOrientation);
+
+        LatencyMonitor latencyMonitor = this.latencyMonitor;
+
+        if (latencyMonitor != null)
+        {
+            latencyMonitor.recordProcessed(timestamp);
+        }
+    }
+
+    private void drainSamples()
+    {
+        while (sampleQueue.poll(sampleTimestamp, sampleValues))
+        {
+            process(sampleValues, sampleTimestamp[0]);
+        }
+    }
+}
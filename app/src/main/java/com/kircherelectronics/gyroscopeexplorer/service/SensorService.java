@@ -0,0 +1,560 @@
+package com.kircherelectronics.gyroscopeexplorer.service;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.preference.PreferenceManager;
+
+import com.kircherelectronics.fsensor.sensor.FSensor;
+import com.kircherelectronics.fsensor.sensor.gyroscope.ComplementaryGyroscopeSensor;
+import com.kircherelectronics.fsensor.sensor.gyroscope.GyroscopeSensor;
+import com.kircherelectronics.fsensor.sensor.gyroscope.KalmanGyroscopeSensor;
+import com.kircherelectronics.gyroscopeexplorer.R;
+import com.kircherelectronics.gyroscopeexplorer.activity.ConfigActivity;
+import com.kircherelectronics.gyroscopeexplorer.activity.GyroscopeActivity;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.CsvDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerManager;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DeltaLogFormat;
+import com.kircherelectronics.gyroscopeexplorer.fusion.ComplementaryFusion;
+import com.kircherelectronics.gyroscopeexplorer.fusion.GyroscopeIntegration;
+import com.kircherelectronics.gyroscopeexplorer.fusion.KalmanFusion;
+import com.kircherelectronics.gyroscopeexplorer.sensor.BatchedGyroscopeSensor;
+import com.kircherelectronics.gyroscopeexplorer.sensor.CalibrationCache;
+import com.kircherelectronics.gyroscopeexplorer.sensor.FusionSensor;
+import com.kircherelectronics.gyroscopeexplorer.sensor.OrientationSnapshot;
+import com.kircherelectronics.gyroscopeexplorer.sensor.SensorProcessor;
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyMonitor;
+
+import androidx.core.app.NotificationCompat;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Owns the sensor, the {@link SensorProcessor} and the data logger, so a log
+ * keeps running when the activity is paused or destroyed. The activity binds
+ * to the service to display the orientation. While a log is running the
+ * service is started and in the foreground, when it stops the service goes
+ * away with the last client.
+ *
+ * @author Kaleb
+ */
+public class SensorService extends Service {
+    public static final String KALMAN_ENGINE_FSENSOR = "fsensor";
+    public static final String KALMAN_ENGINE_NATIVE = "native";
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final String NOTIFICATION_CHANNEL_ID = "data_logging";
+
+    private final IBinder binder = new LocalBinder();
+
+    private FSensor fSensor;
+    private Mode sensorMode;
+    // The preferences fSensor was built with, so it is only rebuilt when they
+    // change
+    private String sensorConfiguration;
+
+    // Filters and logs the samples off the main thread
+    private SensorProcessor sensorProcessor;
+
+    // Keeps logging with hardware batching while nothing is displayed, when
+    // low power logging is enabled
+    private BatchedGyroscopeSensor batchedSensor;
+    private boolean lowPowerLogging = false;
+    // Whether the running log was started with low power logging enabled
+    private boolean lowPowerLog = false;
+    private boolean processing = false;
+
+    // The gyroscope bias saved between runs, when bias correction is enabled
+    private CalibrationCache calibrationCache;
+
+    private DataLoggerManager dataLogger;
+
+    // How stale the orientation is by the time it is processed, displayed
+    // and logged
+    private final LatencyMonitor latencyMonitor = new LatencyMonitor();
+
+    // Indicate if the output should be logged to a .csv file
+    private boolean logData = false;
+    private boolean displayActive = false;
+
+    public class LocalBinder extends Binder {
+        public SensorService getService() {
+            return SensorService.this;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        dataLogger = new DataLoggerManager(this);
+        sensorProcessor = new SensorProcessor(dataLogger);
+        batchedSensor = new BatchedGyroscopeSensor(this, sensorProcessor);
+        calibrationCache = new CalibrationCache(this);
+
+        sensorProcessor.setLatencyMonitor(latencyMonitor);
+        dataLogger.setLatencyMonitor(latencyMonitor);
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // A log can't be resumed after the process is killed
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Print the latencies with "adb shell dumpsys activity service
+     * SensorService", and start them over by adding "reset".
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        latencyMonitor.dump(writer);
+
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            latencyMonitor.reset();
+            writer.println("Latency reset");
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (logData) {
+            stopDataLog();
+        }
+
+        stopSensor();
+
+        super.onDestroy();
+    }
+
+    /**
+     * @return the latest processed orientation, may be read from any thread.
+     */
+    public OrientationSnapshot getOrientation() {
+        return sensorProcessor.getOrientation();
+    }
+
+    public boolean isLogging() {
+        return logData;
+    }
+
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
+    public void reset() {
+        if (fSensor != null) {
+            fSensor.reset();
+        }
+    }
+
+    /**
+     * Called when the orientation is displayed or hidden. The sensor is
+     * started with the latest preferences when the display becomes active,
+     * a sensor that is already running is only rebuilt if its preferences
+     * changed, so a log carries on without a step in the orientation. The
+     * sensor is stopped when the display becomes inactive, unless a log is
+     * running.
+     */
+    public void setDisplayActive(boolean displayActive) {
+        this.displayActive = displayActive;
+
+        if (displayActive) {
+            Mode mode = readPrefs();
+
+            // Restart without stopping the processor, so none of the
+            // samples flushed from a batching sensor are discarded
+            if (lowPowerLogging) {
+                stopAcquisition();
+
+                // Carry on from where the batched sensor got to
+                float[] orientation = new float[3];
+                sensorProcessor.getOrientation().read(orientation);
+
+                startSensor(mode, orientation);
+            } else if (fSensor == null || !getSensorConfiguration(mode).equals(sensorConfiguration)) {
+                stopAcquisition();
+                startSensor(mode, null);
+            }
+        } else if (!logData) {
+            stopSensor();
+        } else if (lowPowerLog) {
+            startLowPowerLogging();
+        }
+    }
+
+    public void startDataLog() {
+        if (!logData) {
+            logData = true;
+
+            // Keep the service, and the log, alive without any clients
+            startService(new Intent(this, SensorService.class));
+            startForeground(NOTIFICATION_ID, buildNotification());
+
+            if (fSensor == null && !lowPowerLogging) {
+                startSensor(readPrefs(), null);
+            }
+
+            lowPowerLog = getPrefSensorLowPowerEnabled();
+            dataLogger.setSensorInfo(getLoggedSensorMode(), getPrefSensorSamplingPeriod());
+            dataLogger.startDataLog();
+            sensorProcessor.setLogData(true);
+        }
+    }
+
+    /**
+     * @return the path of the log file.
+     */
+    public String stopDataLog() {
+        String path = null;
+
+        if (logData) {
+            logData = false;
+            sensorProcessor.setLogData(false);
+            path = dataLogger.stopDataLog();
+
+            stopForeground(true);
+            stopSelf();
+
+            if (!displayActive) {
+                stopSensor();
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * @param initialOrientation the orientation to carry on from, or null to
+     *                           start over.
+     */
+    private void startSensor(Mode mode, float[] initialOrientation) {
+        int samplingPeriodUs = getPrefSensorSamplingPeriod();
+        // FSensor's sensors take the rates as they are
+        CalibrationCache biasCorrection = getPrefGyroscopeBiasCorrectionEnabled() ? calibrationCache : null;
+
+        switch (mode) {
+            case GYROSCOPE_ONLY:
+                // FSensor's GyroscopeSensor always starts over from nothing
+                if (biasCorrection != null || initialOrientation != null) {
+                    fSensor = new FusionSensor(this, new GyroscopeIntegration());
+                    ((FusionSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                    ((FusionSensor)fSensor).setBiasCorrection(biasCorrection);
+                } else {
+                    fSensor = new GyroscopeSensor(this);
+                    ((GyroscopeSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                }
+                break;
+            case COMPLIMENTARY_FILTER:
+                fSensor = new ComplementaryGyroscopeSensor(this);
+                ((ComplementaryGyroscopeSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                ((ComplementaryGyroscopeSensor)fSensor).setFSensorComplimentaryTimeConstant(getPrefImuOCfQuaternionCoeff());
+                break;
+            case KALMAN_FILTER:
+                fSensor = new KalmanGyroscopeSensor(this);
+                ((KalmanGyroscopeSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                break;
+            case NATIVE_COMPLIMENTARY_FILTER:
+                fSensor = new FusionSensor(this, new ComplementaryFusion(getPrefImuOCfQuaternionCoeff()));
+                ((FusionSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                ((FusionSensor)fSensor).setBiasCorrection(biasCorrection);
+                break;
+            case NATIVE_KALMAN_FILTER:
+                fSensor = new FusionSensor(this, new KalmanFusion());
+                ((FusionSensor)fSensor).setSensorDelay(samplingPeriodUs);
+                ((FusionSensor)fSensor).setBiasCorrection(biasCorrection);
+                break;
+        }
+
+        // FSensor's fusions start over from the accelerometer and
+        // magnetometer, which they are corrected towards anyway
+        if (initialOrientation != null && fSensor instanceof FusionSensor) {
+            ((FusionSensor)fSensor).setInitialOrientation(initialOrientation);
+        }
+
+        sensorMode = mode;
+        sensorConfiguration = getSensorConfiguration(mode);
+
+        if (!processing) {
+            sensorProcessor.start();
+            processing = true;
+        }
+
+        fSensor.register(sensorProcessor);
+        fSensor.start();
+    }
+
+    private void stopSensor() {
+        stopAcquisition();
+
+        if (processing) {
+            sensorProcessor.stop();
+            processing = false;
+        }
+    }
+
+    private void stopAcquisition() {
+        if (lowPowerLogging) {
+            batchedSensor.stop();
+            lowPowerLogging = false;
+        } else if (fSensor != null) {
+            fSensor.unregister(sensorProcessor);
+            fSensor.stop();
+            fSensor = null;
+            sensorConfiguration = null;
+        }
+    }
+
+    /**
+     * @return the preferences the sensor is built from, so a running sensor
+     * can be compared with them.
+     */
+    private String getSensorConfiguration(Mode mode) {
+        return mode.name() + "," + getPrefSensorSamplingPeriod() + "," + getPrefImuOCfQuaternionCoeff()
+                + "," + getPrefGyroscopeBiasCorrectionEnabled();
+    }
+
+    /**
+     * @return the mode recorded in the header of the log. A log started with
+     * low power logging enabled may hand over to {@link BatchedGyroscopeSensor},
+     * which integrates the gyroscope alone, so it names both modes.
+     */
+    private String getLoggedSensorMode() {
+        return lowPowerLog ? sensorMode.name() + "+" + BatchedGyroscopeSensor.MODE : sensorMode.name();
+    }
+
+    /**
+     * Carry on from the last orientation with the hardware batching the
+     * samples, so the processor can sleep between the batches.
+     */
+    private void startLowPowerLogging() {
+        if (fSensor == null) {
+            return;
+        }
+
+        // Only one sensor may feed the processor at a time
+        fSensor.unregister(sensorProcessor);
+        fSensor.stop();
+
+        float[] orientation = new float[3];
+        sensorProcessor.getOrientation().read(orientation);
+
+        batchedSensor.setSamplingPeriod(getPrefSensorSamplingPeriod());
+        batchedSensor.setMaxReportLatency(getPrefSensorMaxReportLatency() * 1000);
+        batchedSensor.setBiasCorrection(getPrefGyroscopeBiasCorrectionEnabled() ? calibrationCache : null);
+        lowPowerLogging = batchedSensor.start(orientation);
+
+        if (lowPowerLogging) {
+            fSensor = null;
+            sensorConfiguration = null;
+        } else {
+            fSensor.register(sensorProcessor);
+            fSensor.start();
+        }
+    }
+
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.notification_channel_logging), NotificationManager.IMPORTANCE_LOW);
+            ((NotificationManager) getSystemService(NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+        }
+
+        Intent intent = new Intent(this, GyroscopeActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, intent, 0);
+
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_timeline_white_48px)
+                .setContentTitle(getString(R.string.notification_logging_title))
+                .setContentText(getString(R.string.notification_logging_text))
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    private boolean getPrefMeanFilterEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.MEAN_FILTER_SMOOTHING_ENABLED_KEY, false);
+    }
+
+    private float getPrefMeanFilterTimeConstant() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Float.parseFloat(prefs.getString(ConfigActivity.MEAN_FILTER_SMOOTHING_TIME_CONSTANT_KEY, "0.5"));
+    }
+
+    private String getPrefMeanFilterType() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getString(ConfigActivity.MEAN_FILTER_SMOOTHING_TYPE_KEY, SensorProcessor.MEAN_FILTER_FSENSOR);
+    }
+
+    private boolean getPrefKalmanEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.KALMAN_QUATERNION_ENABLED_KEY, false);
+    }
+
+    private String getPrefKalmanEngine() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getString(ConfigActivity.KALMAN_ENGINE_KEY, KALMAN_ENGINE_FSENSOR);
+    }
+
+    private boolean getPrefNativeComplimentaryEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.NATIVE_COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+    }
+
+    private boolean getPrefComplimentaryEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.COMPLIMENTARY_QUATERNION_ENABLED_KEY, false);
+    }
+
+    private float getPrefImuOCfQuaternionCoeff() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Float.parseFloat(prefs.getString(ConfigActivity.COMPLIMENTARY_QUATERNION_COEFF_KEY, "0.5"));
+    }
+
+    private boolean getPrefSampleExactLoggingEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.LOG_SAMPLE_EXACT_ENABLED_KEY, false);
+    }
+
+    private String getPrefLogFormat() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getString(ConfigActivity.LOG_FORMAT_KEY, DataLoggerManager.LOG_FORMAT_CSV);
+    }
+
+    private String getPrefLogCompression() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getString(ConfigActivity.LOG_COMPRESSION_KEY, DataLoggerManager.COMPRESSION_NONE);
+    }
+
+    private float getPrefLogDeltaQuantum() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Float.parseFloat(prefs.getString(ConfigActivity.LOG_DELTA_QUANTUM_KEY,
+                String.valueOf(DeltaLogFormat.DEFAULT_QUANTUM)));
+    }
+
+    private int getPrefLogCsvBatchSize() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Integer.parseInt(prefs.getString(ConfigActivity.LOG_CSV_BATCH_SIZE_KEY, "64"));
+    }
+
+    private long getPrefLogCsvBatchInterval() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Long.parseLong(prefs.getString(ConfigActivity.LOG_CSV_BATCH_INTERVAL_KEY, "500"));
+    }
+
+    private String getPrefLogCsvDurability() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getString(ConfigActivity.LOG_CSV_DURABILITY_KEY, CsvDataLogger.DURABILITY_NONE);
+    }
+
+    private float getPrefLogSegmentSize() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Float.parseFloat(prefs.getString(ConfigActivity.LOG_SEGMENT_SIZE_KEY, "0"));
+    }
+
+    private float getPrefLogSegmentDuration() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Float.parseFloat(prefs.getString(ConfigActivity.LOG_SEGMENT_DURATION_KEY, "0"));
+    }
+
+    private int getPrefSensorSamplingPeriod() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Integer.parseInt(prefs.getString(ConfigActivity.SENSOR_SAMPLING_PERIOD_KEY, "0"));
+    }
+
+    private int getPrefSensorMaxReportLatency() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return Integer.parseInt(prefs.getString(ConfigActivity.SENSOR_MAX_REPORT_LATENCY_KEY, "10000"));
+    }
+
+    private boolean getPrefSensorLowPowerEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.SENSOR_LOW_POWER_ENABLED_KEY, false);
+    }
+
+    private boolean getPrefGyroscopeBiasCorrectionEnabled() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
+        return prefs.getBoolean(ConfigActivity.GYROSCOPE_BIAS_CORRECTION_ENABLED_KEY, false);
+    }
+
+    private Mode readPrefs() {
+        boolean meanFilterEnabled = getPrefMeanFilterEnabled();
+        boolean complimentaryFilterEnabled = getPrefComplimentaryEnabled();
+        boolean kalmanFilterEnabled = getPrefKalmanEnabled();
+        boolean nativeComplimentaryFilterEnabled = getPrefNativeComplimentaryEnabled();
+
+        sensorProcessor.setMeanFilterEnabled(meanFilterEnabled);
+        if(meanFilterEnabled) {
+            sensorProcessor.setMeanFilterTimeConstant(getPrefMeanFilterTimeConstant());
+            sensorProcessor.setMeanFilterType(getPrefMeanFilterType());
+        }
+
+        // Batched samples arrive in bursts long after they were measured,
+        // polling would keep only the newest of each burst
+        dataLogger.setSampleExact(getPrefSampleExactLoggingEnabled() || getPrefSensorLowPowerEnabled());
+        dataLogger.setLogFormat(getPrefLogFormat());
+        dataLogger.setCompression(getPrefLogCompression());
+        dataLogger.setDeltaQuantum(getPrefLogDeltaQuantum());
+        dataLogger.setCsvBatching(getPrefLogCsvBatchSize(), getPrefLogCsvBatchInterval(), getPrefLogCsvDurability());
+        // Megabytes and minutes
+        dataLogger.setSegmentation((long) (getPrefLogSegmentSize() * 1024 * 1024),
+                (long) (getPrefLogSegmentDuration() * 60 * 1000));
+
+        Mode mode;
+
+        if(!complimentaryFilterEnabled && !kalmanFilterEnabled && !nativeComplimentaryFilterEnabled) {
+            mode = Mode.GYROSCOPE_ONLY;
+        } else if(nativeComplimentaryFilterEnabled) {
+            mode = Mode.NATIVE_COMPLIMENTARY_FILTER;
+        } else if(complimentaryFilterEnabled) {
+            mode = Mode.COMPLIMENTARY_FILTER;
+        } else if(KALMAN_ENGINE_NATIVE.equals(getPrefKalmanEngine())) {
+            mode = Mode.NATIVE_KALMAN_FILTER;
+        } else {
+            mode = Mode.KALMAN_FILTER;
+        }
+
+        return mode;
+    }
+
+    private enum Mode {
+        GYROSCOPE_ONLY,
+        COMPLIMENTARY_FILTER,
+        KALMAN_FILTER,
+        NATIVE_COMPLIMENTARY_FILTER,
+        NATIVE_KALMAN_FILTER
+    }
+
+}
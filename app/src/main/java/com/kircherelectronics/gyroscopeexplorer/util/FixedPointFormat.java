@@ -0,0 +1,142 @@
+package com.kircherelectronics.gyroscopeexplorer.util;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Formats numbers with a fixed number of decimals straight into a char
+ * array. Unlike {@link String#valueOf(float)} or {@link String#format} it
+ * does not allocate, so it can be used once per sample or frame.
+ */
+public final class FixedPointFormat
+{
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private static final char[] NAN = "NaN".toCharArray();
+    private static final char[] INFINITY = "Infinity".toCharArray();
+
+    private FixedPointFormat()
+    {
+    }
+
+    /**
+     * The most characters {@link #format(double, int, char[], int)} writes
+     * for the given number of decimals.
+     */
+    public static int maxLength(int decimals)
+    {
+        // Sign, 19 integer digits, point and decimals
+        return 1 + 19 + 1 + decimals;
+    }
+
+    /**
+     * Write a number rounded to a fixed number of decimals.
+     *
+     * @param value    the number.
+     * @param decimals the number of decimals, at most 9.
+     * @param out      receives the characters.
+     * @param offset   the index to start writing at.
+     * @return the index after the last character written.
+     */
+    public static int format(double value, int decimals, char[] out, int offset)
+    {
+        if (value != value)
+        {
+            return copy(NAN, out, offset);
+        }
+
+        boolean negative = value < 0;
+        double abs = negative ? -value : value;
+
+        if (abs == Double.POSITIVE_INFINITY)
+        {
+            if (negative)
+            {
+                out[offset++] = '-';
+            }
+
+            return copy(INFINITY, out, offset);
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = abs * scale + 0.5;
+
+        if (scaled >= Long.MAX_VALUE)
+        {
+            // Far outside the range of any sensor, fall back to the slow path
+            return copy(Double.toString(value).toCharArray(), out, offset);
+        }
+
+        long units = (long) scaled;
+
+        // Don't write "-0.0" for values that round to zero
+        if (negative && units != 0)
+        {
+            out[offset++] = '-';
+        }
+
+        offset = formatLong(units / scale, out, offset);
+
+        if (decimals > 0)
+        {
+            out[offset++] = '.';
+
+            long fraction = units % scale;
+
+            for (int i = offset + decimals - 1; i >= offset; i--)
+            {
+                out[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+
+            offset += decimals;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Write a non-negative integer.
+     *
+     * @return the index after the last character written.
+     */
+    private static int formatLong(long value, char[] out, int offset)
+    {
+        int digits = 1;
+
+        for (long v = value / 10; v > 0; v /= 10)
+        {
+            digits++;
+        }
+
+        for (int i = offset + digits - 1; i >= offset; i--)
+        {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return offset + digits;
+    }
+
+    private static int copy(char[] chars, char[] out, int offset)
+    {
+        System.arraycopy(chars, 0, out, offset, chars.length);
+
+        return offset + chars.length;
+    }
+}
@@ -0,0 +1,170 @@
+package com.kircherelectronics.gyroscopeexplorer.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed set of buckets, laid
+ * out like an HDR histogram: each power of two is split into
+ * {@link #SUB_BUCKETS} linear buckets, so any latency is recorded within
+ * about 6% however large it is.
+ *
+ * Recording is a bucket lookup and an atomic increment, it neither locks nor
+ * allocates, and any number of threads may record at once. Reading while
+ * recording gives counts that are each exact but may be a few samples apart
+ * from each other, which is fine for percentiles.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below this get a bucket each
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int LINEAR_LIMIT_BITS = SUB_BUCKET_BITS + 1;
+
+    // Longer latencies are recorded as this, about 68 seconds
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_VALUE_BITS - LINEAR_LIMIT_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param latency the latency in nanoseconds, negative latencies are
+     *                recorded as 0.
+     */
+    public void record(long latency)
+    {
+        if (latency < 0)
+        {
+            latency = 0;
+        }
+        else if (latency > MAX_VALUE)
+        {
+            latency = MAX_VALUE;
+        }
+
+        counts.incrementAndGet(getIndex(latency));
+        count.incrementAndGet();
+
+        long current = max.get();
+
+        while (latency > current && !max.compareAndSet(current, latency))
+        {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded.
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return the largest latency recorded in nanoseconds, 0 if none.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @param percentile the percentile, 0 to 100.
+     * @return the latency in nanoseconds that percentile of the recorded
+     * latencies are at or below, to within the width of its bucket. 0 if
+     * nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = count.get();
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts.get(i);
+
+            if (seen >= target)
+            {
+                // The highest value in the bucket, but never past the max
+                return Math.min(getHighestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Forget everything recorded. Latencies recorded at the same time may or
+     * may not be kept.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int getIndex(long value)
+    {
+        if (value < LINEAR_LIMIT)
+        {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+
+        return LINEAR_LIMIT + (exponent - LINEAR_LIMIT_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getHighestValue(int index)
+    {
+        if (index < LINEAR_LIMIT)
+        {
+            return index;
+        }
+
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_LIMIT_BITS;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,182 @@
+package com.kircherelectronics.gyroscopeexplorer.util;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * How stale the orientation is at each stage of the pipeline, and how many
+ * samples never got there.
+ *
+ * Every stage measures from the {@link System#nanoTime()} timestamp the
+ * sample was given when it reached the SensorProcessor, or the sensor
+ * timestamp of a batched sample, to when the stage is done with it:
+ *
+ * processed - filtered and published to the snapshot, on the processing thread.
+ * displayed - the text and gauges updated with it, on the UI thread.
+ * logged    - handed to the log file, on the data logger thread.
+ *
+ * Recording never locks or allocates, so it can stay on in release builds.
+ */
+public class LatencyMonitor
+{
+    private static final double NS2MS = 1.0 / 1000000.0;
+
+    private final LatencyHistogram processed = new LatencyHistogram();
+    private final LatencyHistogram displayed = new LatencyHistogram();
+    private final LatencyHistogram logged = new LatencyHistogram();
+
+    private final AtomicLong processorDropped = new AtomicLong();
+    private final AtomicLong loggerDropped = new AtomicLong();
+    private final AtomicLong notDisplayed = new AtomicLong();
+
+    /**
+     * @param timestamp the {@link System#nanoTime()} timestamp of a sample
+     *                  just published.
+     */
+    public void recordProcessed(long timestamp)
+    {
+        processed.record(System.nanoTime() - timestamp);
+    }
+
+    /**
+     * @param timestamp the {@link System#nanoTime()} timestamp of a sample
+     *                  just displayed.
+     */
+    public void recordDisplayed(long timestamp)
+    {
+        displayed.record(System.nanoTime() - timestamp);
+    }
+
+    /**
+     * @param timestamp the {@link System#nanoTime()} timestamp of a sample
+     *                  just written to the log.
+     */
+    public void recordLogged(long timestamp)
+    {
+        logged.record(System.nanoTime() - timestamp);
+    }
+
+    /**
+     * Count a sample dropped because the processing queue was full.
+     */
+    public void countProcessorDropped()
+    {
+        processorDropped.incrementAndGet();
+    }
+
+    /**
+     * Count a sample dropped because the data logger queue was full.
+     */
+    public void countLoggerDropped()
+    {
+        loggerDropped.incrementAndGet();
+    }
+
+    /**
+     * Count samples replaced by newer ones before a frame could show them.
+     * Expected whenever the sensor is faster than the display.
+     */
+    public void countNotDisplayed(long samples)
+    {
+        notDisplayed.addAndGet(samples);
+    }
+
+    public LatencyHistogram getProcessed()
+    {
+        return processed;
+    }
+
+    public LatencyHistogram getDisplayed()
+    {
+        return displayed;
+    }
+
+    public LatencyHistogram getLogged()
+    {
+        return logged;
+    }
+
+    public long getProcessorDropped()
+    {
+        return processorDropped.get();
+    }
+
+    public long getLoggerDropped()
+    {
+        return loggerDropped.get();
+    }
+
+    public long getNotDisplayed()
+    {
+        return notDisplayed.get();
+    }
+
+    public void reset()
+    {
+        processed.reset();
+        displayed.reset();
+        logged.reset();
+        processorDropped.set(0);
+        loggerDropped.set(0);
+        notDisplayed.set(0);
+    }
+
+    /**
+     * Write p50, p99 and max of each stage in milliseconds and the dropped
+     * samples, one line each.
+     */
+    public void format(StringBuilder out)
+    {
+        char[] number = new char[FixedPointFormat.maxLength(2)];
+
+        format("processed", processed, number, out);
+        format("displayed", displayed, number, out);
+        format("logged   ", logged, number, out);
+
+        out.append("dropped   processor ").append(processorDropped.get())
+                .append(" logger ").append(loggerDropped.get())
+                .append(" not displayed ").append(notDisplayed.get());
+    }
+
+    /**
+     * Write the same as {@link #format(StringBuilder)}, for dumpsys.
+     */
+    public void dump(PrintWriter writer)
+    {
+        StringBuilder out = new StringBuilder();
+        format(out);
+
+        writer.println("Latency (ms):");
+        writer.println(out);
+    }
+
+    private static void format(String name, LatencyHistogram histogram, char[] number, StringBuilder out)
+    {
+        out.append(name);
+        append(out, "  p50 ", histogram.getValueAtPercentile(50), number);
+        append(out, "  p99 ", histogram.getValueAtPercentile(99), number);
+        append(out, "  max ", histogram.getMax(), number);
+        out.append("  n ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void append(StringBuilder out, String label, long nanos, char[] number)
+    {
+        out.append(label).append(number, 0, FixedPointFormat.format(nanos * NS2MS, 2, number, 0));
+    }
+}
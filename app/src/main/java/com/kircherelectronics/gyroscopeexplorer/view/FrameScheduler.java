@@ -0,0 +1,202 @@
+package com.kircherelectronics.gyroscopeexplorer.view;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.kircherelectronics.gyroscopeexplorer.sensor.OrientationSnapshot;
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyMonitor;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Drives the UI updates from the display's vsync with a
+ * {@link Choreographer}, so they run at most once per frame at whatever rate
+ * the display refreshes. A frame is only handed to the listener when a new
+ * orientation has been published and it moved visibly. After a while
+ * without movement the scheduler stops listening for vsync and only checks
+ * the orientation every {@link #IDLE_INTERVAL} milliseconds, until it moves
+ * again.
+ *
+ * Choreographer needs API 16, older devices fall back to a 60 Hz handler.
+ * Must be used from the main thread.
+ */
+public class FrameScheduler {
+
+    /**
+     * Receives the orientation on the frames that need updating.
+     */
+    public interface FrameListener {
+        void onFrame(float[] orientation);
+    }
+
+    // Changes smaller than this don't show on the gauges or the text
+    private static final float MOVEMENT_THRESHOLD = (float) Math.toRadians(0.05);
+
+    // About half a second at 60 Hz without movement
+    private static final int IDLE_FRAMES = 30;
+    private static final long IDLE_INTERVAL = 100;
+
+    private static final long FALLBACK_FRAME_INTERVAL = 16;
+
+    private final OrientationSnapshot snapshot;
+    private final FrameListener listener;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final VsyncCallback vsyncCallback;
+
+    private final long[] timestamp = new long[1];
+    private final float[] orientation = new float[3];
+    private final float[] lastOrientation = new float[3];
+    private long lastSequence = -1;
+    private int stillFrames = 0;
+
+    private boolean running = false;
+
+    private LatencyMonitor latencyMonitor;
+
+    private final Runnable frameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    public FrameScheduler(OrientationSnapshot snapshot, FrameListener listener) {
+        this.snapshot = snapshot;
+        this.listener = listener;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            vsyncCallback = new VsyncCallback(this);
+        } else {
+            vsyncCallback = null;
+        }
+    }
+
+    /**
+     * Record how stale each sample is once it has been displayed, and the
+     * samples replaced before a frame could show them.
+     *
+     * @param latencyMonitor the monitor, or null to record nothing.
+     */
+    public void setLatencyMonitor(LatencyMonitor latencyMonitor) {
+        this.latencyMonitor = latencyMonitor;
+    }
+
+    public void start() {
+        if (!running) {
+            running = true;
+            // Always draw the first frame
+            lastSequence = -1;
+            stillFrames = 0;
+            scheduleFrame();
+        }
+    }
+
+    public void stop() {
+        running = false;
+
+        handler.removeCallbacks(frameRunnable);
+        if (vsyncCallback != null) {
+            vsyncCallback.cancel();
+        }
+    }
+
+    private void doFrame() {
+        if (!running) {
+            return;
+        }
+
+        long sequence = snapshot.getSequence();
+
+        if (sequence != lastSequence) {
+            snapshot.read(timestamp, orientation);
+
+            if (latencyMonitor != null && lastSequence >= 0 && sequence - lastSequence > 1) {
+                latencyMonitor.countNotDisplayed(sequence - lastSequence - 1);
+            }
+
+            if (lastSequence < 0 || hasMoved()) {
+                System.arraycopy(orientation, 0, lastOrientation, 0, orientation.length);
+                listener.onFrame(orientation);
+                stillFrames = 0;
+
+                if (latencyMonitor != null) {
+                    latencyMonitor.recordDisplayed(timestamp[0]);
+                }
+            } else {
+                stillFrames++;
+            }
+
+            lastSequence = sequence;
+        } else {
+            stillFrames++;
+        }
+
+        if (stillFrames >= IDLE_FRAMES) {
+            handler.postDelayed(frameRunnable, IDLE_INTERVAL);
+        } else {
+            scheduleFrame();
+        }
+    }
+
+    private boolean hasMoved() {
+        for (int i = 0; i < orientation.length; i++) {
+            if (Math.abs(orientation[i] - lastOrientation[i]) >= MOVEMENT_THRESHOLD) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void scheduleFrame() {
+        if (vsyncCallback != null) {
+            vsyncCallback.post();
+        } else {
+            handler.postDelayed(frameRunnable, FALLBACK_FRAME_INTERVAL);
+        }
+    }
+
+    /**
+     * Kept apart so the Choreographer classes are never loaded below API 16.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class VsyncCallback implements Choreographer.FrameCallback {
+        private final FrameScheduler scheduler;
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        VsyncCallback(FrameScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        void cancel() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduler.doFrame();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Replaces the framework log on the JVM, where its native methods don't
+ * exist. It is ahead of the framework on the class path of the benchmarks.
+ * Messages are dropped so logging doesn't show up in the measurements,
+ * warnings and errors go to standard error.
+ */
+public final class Log
+{
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log()
+    {
+    }
+
+    public static int v(String tag, String msg)
+    {
+        return println(VERBOSE, tag, msg);
+    }
+
+    public static int v(String tag, String msg, Throwable tr)
+    {
+        return println(VERBOSE, tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static int d(String tag, String msg)
+    {
+        return println(DEBUG, tag, msg);
+    }
+
+    public static int d(String tag, String msg, Throwable tr)
+    {
+        return println(DEBUG, tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static int i(String tag, String msg)
+    {
+        return println(INFO, tag, msg);
+    }
+
+    public static int i(String tag, String msg, Throwable tr)
+    {
+        return println(INFO, tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static int w(String tag, String msg)
+    {
+        return println(WARN, tag, msg);
+    }
+
+    public static int w(String tag, String msg, Throwable tr)
+    {
+        return println(WARN, tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static int w(String tag, Throwable tr)
+    {
+        return println(WARN, tag, getStackTraceString(tr));
+    }
+
+    public static int e(String tag, String msg)
+    {
+        return println(ERROR, tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr)
+    {
+        return println(ERROR, tag, msg + '\n' + getStackTraceString(tr));
+    }
+
+    public static boolean isLoggable(String tag, int level)
+    {
+        return level >= WARN;
+    }
+
+    public static String getStackTraceString(Throwable tr)
+    {
+        if (tr == null)
+        {
+            return "";
+        }
+
+        StringWriter writer = new StringWriter();
+        tr.printStackTrace(new PrintWriter(writer));
+
+        return writer.toString();
+    }
+
+    public static int println(int priority, String tag, String msg)
+    {
+        if (priority < WARN)
+        {
+            return 0;
+        }
+
+        System.err.println(tag + ": " + msg);
+
+        return msg.length();
+    }
+}
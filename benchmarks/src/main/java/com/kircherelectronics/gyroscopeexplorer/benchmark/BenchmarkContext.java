@@ -0,0 +1,85 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Just enough of a context for the data loggers to run on the JVM. Logs are
+ * written to a temporary directory that is removed by {@link #delete()}.
+ */
+public class BenchmarkContext extends ContextWrapper
+{
+    private final File directory;
+
+    public BenchmarkContext()
+    {
+        super(null);
+
+        try
+        {
+            directory = Files.createTempDirectory("gyroscope-explorer").toFile();
+        } catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public File getExternalFilesDir(String type)
+    {
+        return directory;
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent)
+    {
+        // There is no media scanner on the JVM
+    }
+
+    public File newFile(String name)
+    {
+        return new File(directory, name);
+    }
+
+    /**
+     * Delete the logs written so far.
+     */
+    public void clear()
+    {
+        File[] files = directory.listFiles();
+
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+    }
+
+    public void delete()
+    {
+        clear();
+        directory.delete();
+    }
+}
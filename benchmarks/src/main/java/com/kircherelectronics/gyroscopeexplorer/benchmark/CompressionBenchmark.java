@@ -0,0 +1,169 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.BinaryLogFormat;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DeltaLogFormat;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.ReusableGzipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The CPU cost of compressing 10k samples, and the compression ratio
+ * against the 20 byte records of the binary log. The output only goes to a
+ * byte counter so the file system isn't measured.
+ *
+ * <ul>
+ * <li>raw: binary records, uncompressed</li>
+ * <li>gzip: binary records compressed with gzip</li>
+ * <li>delta: delta encoded records, uncompressed</li>
+ * <li>delta.gz: delta encoded records compressed with gzip, as written by
+ * the compressed logs</li>
+ * </ul>
+ *
+ * The ratio is printed at the end of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark
+{
+    private static final int SAMPLES = 10000;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    @Param({"raw", "gzip", "delta", "delta.gz"})
+    public String encoding;
+
+    private Samples samples;
+    private Deflater deflater;
+    private byte[] deflaterBuffer;
+    private ByteBuffer recordBuffer;
+    private byte[] record;
+    private CountingOutputStream counter;
+
+    private long rawBytes;
+    private long encodedBytes;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        samples = new Samples();
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflaterBuffer = new byte[BUFFER_SIZE];
+        recordBuffer = ByteBuffer.allocate(BinaryLogFormat.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        record = new byte[DeltaLogFormat.MAX_RECORD_SIZE];
+        counter = new CountingOutputStream();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        deflater.end();
+
+        System.out.println(String.format(Locale.US, "%n%s: %.2f bytes per sample, ratio %.2f", encoding,
+                encodedBytes / (double) (rawBytes / BinaryLogFormat.RECORD_SIZE), rawBytes / (double) encodedBytes));
+    }
+
+    @Benchmark
+    public long encode10k() throws IOException
+    {
+        counter.count = 0;
+
+        OutputStream out = counter;
+        ReusableGzipOutputStream gzipOutputStream = null;
+
+        if ("gzip".equals(encoding) || encoding.endsWith(".gz"))
+        {
+            gzipOutputStream = new ReusableGzipOutputStream(counter, deflater, deflaterBuffer);
+            out = gzipOutputStream;
+        }
+
+        out = new BufferedOutputStream(out, BUFFER_SIZE);
+
+        if (encoding.startsWith("delta"))
+        {
+            DeltaLogFormat.Encoder encoder = new DeltaLogFormat.Encoder(DeltaLogFormat.DEFAULT_QUANTUM);
+
+            for (int i = 0; i < SAMPLES; i++)
+            {
+                out.write(record, 0, encoder.encode(samples.timestamps[i], samples.values[i], record));
+            }
+        }
+        else
+        {
+            for (int i = 0; i < SAMPLES; i++)
+            {
+                recordBuffer.clear();
+                BinaryLogFormat.writeRecord(recordBuffer, samples.timestamps[i], samples.values[i]);
+                out.write(recordBuffer.array(), 0, recordBuffer.position());
+            }
+        }
+
+        out.flush();
+
+        if (gzipOutputStream != null)
+        {
+            gzipOutputStream.finish();
+        }
+
+        rawBytes += SAMPLES * BinaryLogFormat.RECORD_SIZE;
+        encodedBytes += counter.count;
+
+        return counter.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream
+    {
+        private long count;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Handing samples to a running {@link DataLoggerManager}. The producer side
+ * is measured: setRotation() queues the sample and the writer thread logs it
+ * in the background, in the given format. When the producer outruns the
+ * writer the queue fills up and samples are dropped, which is part of the
+ * cost being measured. The cost of writing a row is measured by
+ * {@link SerializationBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataLoggerBenchmark
+{
+    @Param({"false", "true"})
+    public boolean sampleExact;
+
+    @Param({DataLoggerManager.LOG_FORMAT_CSV, DataLoggerManager.LOG_FORMAT_BINARY})
+    public String logFormat;
+
+    private Samples samples;
+    private BenchmarkContext context;
+    private DataLoggerManager dataLogger;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUpTrial()
+    {
+        samples = new Samples();
+        context = new BenchmarkContext();
+        dataLogger = new DataLoggerManager(context);
+        dataLogger.setSampleExact(sampleExact);
+        dataLogger.setLogFormat(logFormat);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration()
+    {
+        dataLogger.startDataLog();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration()
+    {
+        dataLogger.stopDataLog();
+        context.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        context.delete();
+    }
+
+    @Benchmark
+    public void setRotation()
+    {
+        index = Samples.next(index);
+
+        dataLogger.setRotation(samples.values[index], samples.timestamps[index]);
+    }
+}
@@ -0,0 +1,206 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.fsensor.filter.gyroscope.fusion.complimentary.OrientationFusedComplimentary;
+import com.kircherelectronics.fsensor.filter.gyroscope.fusion.kalman.OrientationFusedKalman;
+import com.kircherelectronics.fsensor.util.rotation.RotationUtil;
+import com.kircherelectronics.gyroscopeexplorer.fusion.ComplementaryFusion;
+import com.kircherelectronics.gyroscopeexplorer.fusion.KalmanFusion;
+import com.kircherelectronics.gyroscopeexplorer.fusion.OrientationFusion;
+import com.kircherelectronics.gyroscopeexplorer.fusion.Quaternions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Replays a session through each fusion engine and prints how far each one
+ * strays from the recorded orientation, so a new engine can be checked
+ * against the one it replaces. The logs hold no raw samples, so the sensor
+ * samples are worked out from the orientation by {@link FusionSamples}. They
+ * get a gyroscope bias and noise first, the errors the fusions are there to
+ * correct.
+ *
+ * Run it with ./gradlew :benchmarks:fusionAccuracy, or with
+ * -Psession=/path/to/log.csv to replay a logged session.
+ */
+public class FusionAccuracy
+{
+    // Leave the filters this long to settle before measuring them
+    private static final long SETTLE_NANOS = 2000000000L;
+
+    private static final float[] GYROSCOPE_BIAS = {0.01f, -0.02f, 0.015f};
+    private static final float GYROSCOPE_NOISE = 0.005f;
+    private static final float ACCELERATION_NOISE = 0.05f;
+    private static final float MAGNETIC_NOISE = 0.5f;
+
+    interface Engine
+    {
+        float[] fuse(float[] gyroscope, long timestamp, float[] acceleration, float[] magnetic);
+    }
+
+    /**
+     * The angle between the fused and the expected orientation, in radians.
+     */
+    static final class Result
+    {
+        double rms;
+        double max;
+        int count;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        FusionSamples samples = args.length > 0 ? FusionSamples.fromSession(new File(args[0])) : new FusionSamples();
+        FusionSamples noisy = addNoise(samples, new Random(42));
+
+        report("In-project complementary", samples, noisy, engine(new ComplementaryFusion()));
+        report("FSensor complementary", samples, noisy, fSensorComplementary(noisy));
+        report("In-project Kalman", samples, noisy, engine(new KalmanFusion()));
+
+        OrientationFusedKalman kalman = new OrientationFusedKalman();
+        kalman.startFusion();
+
+        try
+        {
+            report("FSensor Kalman", samples, noisy, fSensorKalman(kalman, noisy));
+        } finally
+        {
+            kalman.stopFusion();
+        }
+    }
+
+    private static void report(String name, FusionSamples samples, FusionSamples noisy, Engine engine)
+    {
+        Result result = measure(samples, noisy, engine);
+
+        System.out.println(String.format(Locale.US, "%-26s rms %7.3f deg  max %7.3f deg  (%d samples)", name,
+                Math.toDegrees(result.rms), Math.toDegrees(result.max), result.count));
+    }
+
+    /**
+     * Fuse the noisy samples and compare every orientation after the filter
+     * has settled with the one the samples were made from.
+     */
+    static Result measure(FusionSamples samples, FusionSamples noisy, Engine engine)
+    {
+        float[] expected = new float[4];
+        float[] actual = new float[4];
+
+        double sumSquared = 0;
+        double max = 0;
+        int count = 0;
+        long timestamp = 0;
+
+        for (int i = 0; i < samples.count; i++)
+        {
+            timestamp += i > 0 ? samples.periods[i] : 0;
+
+            float[] orientation = engine.fuse(noisy.gyroscope[i], timestamp, noisy.acceleration[i], noisy.magnetic[i]);
+
+            if (timestamp < SETTLE_NANOS)
+            {
+                continue;
+            }
+
+            Quaternions.fromOrientation(samples.orientations[i], expected);
+            Quaternions.fromOrientation(orientation, actual);
+
+            // The angle of the rotation between the two
+            double dot = Math.abs(expected[0] * actual[0] + expected[1] * actual[1]
+                    + expected[2] * actual[2] + expected[3] * actual[3]);
+            double error = 2 * Math.acos(Math.min(1, dot));
+
+            sumSquared += error * error;
+            max = Math.max(max, error);
+            count++;
+        }
+
+        Result result = new Result();
+        result.rms = Math.sqrt(sumSquared / Math.max(1, count));
+        result.max = max;
+        result.count = count;
+
+        return result;
+    }
+
+    static Engine engine(final OrientationFusion fusion)
+    {
+        return new Engine()
+        {
+            private final float[] orientation = new float[3];
+
+            @Override
+            public float[] fuse(float[] gyroscope, long timestamp, float[] acceleration, float[] magnetic)
+            {
+                fusion.setAcceleration(acceleration);
+                fusion.setMagnetic(magnetic);
+                fusion.setGyroscope(gyroscope, timestamp, orientation);
+
+                return orientation;
+            }
+        };
+    }
+
+    private static Engine fSensorComplementary(FusionSamples noisy)
+    {
+        final OrientationFusedComplimentary fusion = new OrientationFusedComplimentary(ComplementaryFusion.DEFAULT_TIME_CONSTANT);
+        fusion.setBaseOrientation(RotationUtil.getOrientationVectorFromAccelerationMagnetic(noisy.acceleration[0], noisy.magnetic[0]));
+
+        return new Engine()
+        {
+            @Override
+            public float[] fuse(float[] gyroscope, long timestamp, float[] acceleration, float[] magnetic)
+            {
+                return fusion.calculateFusedOrientation(gyroscope, timestamp, acceleration, magnetic);
+            }
+        };
+    }
+
+    static Engine fSensorKalman(final OrientationFusedKalman fusion, FusionSamples noisy)
+    {
+        fusion.setBaseOrientation(RotationUtil.getOrientationVectorFromAccelerationMagnetic(noisy.acceleration[0], noisy.magnetic[0]));
+
+        return new Engine()
+        {
+            @Override
+            public float[] fuse(float[] gyroscope, long timestamp, float[] acceleration, float[] magnetic)
+            {
+                return fusion.calculateFusedOrientation(gyroscope, timestamp, acceleration, magnetic);
+            }
+        };
+    }
+
+    static FusionSamples addNoise(FusionSamples samples, Random random)
+    {
+        FusionSamples noisy = samples.copy();
+
+        for (int i = 0; i < noisy.count; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                noisy.gyroscope[i][j] += GYROSCOPE_BIAS[j] + (float) random.nextGaussian() * GYROSCOPE_NOISE;
+                noisy.acceleration[i][j] += (float) random.nextGaussian() * ACCELERATION_NOISE;
+                noisy.magnetic[i][j] += (float) random.nextGaussian() * MAGNETIC_NOISE;
+            }
+        }
+
+        return noisy;
+    }
+}
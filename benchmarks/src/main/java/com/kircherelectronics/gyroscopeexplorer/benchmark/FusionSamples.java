@@ -0,0 +1,199 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.fusion.Quaternions;
+import com.kircherelectronics.gyroscopeexplorer.replay.SessionReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The raw gyroscope, accelerometer and magnetometer samples a device would
+ * have measured while following a stream of orientations. The logs only hold
+ * the fused orientation, so this is how a recorded session is replayed
+ * through a fusion engine.
+ *
+ * The stream loops, so the rates of the first sample take the device from the
+ * last orientation back to the first.
+ */
+public final class FusionSamples
+{
+    private static final float GRAVITY = 9.80665f;
+
+    // A magnetic field of 50 uT pointing north and 60 degrees down
+    private static final float MAGNETIC_NORTH = 25f;
+    private static final float MAGNETIC_DOWN = 43.3f;
+
+    public final int count;
+    public final long[] periods;
+    public final float[][] orientations;
+    public final float[][] gyroscope;
+    public final float[][] acceleration;
+    public final float[][] magnetic;
+
+    /**
+     * The synthetic orientations of {@link Samples}.
+     */
+    public FusionSamples()
+    {
+        this(new Samples());
+    }
+
+    private FusionSamples(Samples samples)
+    {
+        this(samples.values, samples.timestamps, Samples.COUNT);
+    }
+
+    /**
+     * @param orientations the azimuth, pitch and roll of each sample.
+     * @param timestamps   the time of each sample in nanoseconds.
+     * @param count        the number of samples.
+     */
+    public FusionSamples(float[][] orientations, long[] timestamps, int count)
+    {
+        this.count = count;
+        this.orientations = orientations;
+
+        periods = new long[count];
+        gyroscope = new float[count][3];
+        acceleration = new float[count][3];
+        magnetic = new float[count][3];
+
+        float[] rotation = new float[4];
+        float[] previous = new float[4];
+        float[] delta = new float[4];
+        float[] matrix = new float[9];
+
+        Quaternions.fromOrientation(orientations[count - 1], previous);
+
+        for (int i = 0; i < count; i++)
+        {
+            periods[i] = i > 0 ? timestamps[i] - timestamps[i - 1] : Samples.PERIOD;
+
+            Quaternions.fromOrientation(orientations[i], rotation);
+
+            // previous * delta = rotation, delta is in the device frame
+            Quaternions.conjugate(previous, delta);
+            Quaternions.multiply(delta, rotation, delta);
+            toRates(delta, periods[i] / 1000000000.0f, gyroscope[i]);
+
+            // The world up and north axes seen from the device are the last
+            // two rows of the rotation matrix
+            Quaternions.toRotationMatrix(rotation, matrix);
+
+            for (int j = 0; j < 3; j++)
+            {
+                acceleration[i][j] = GRAVITY * matrix[6 + j];
+                magnetic[i][j] = MAGNETIC_NORTH * matrix[3 + j] - MAGNETIC_DOWN * matrix[6 + j];
+            }
+
+            System.arraycopy(rotation, 0, previous, 0, 4);
+        }
+    }
+
+    private FusionSamples(FusionSamples other)
+    {
+        count = other.count;
+        periods = other.periods;
+        orientations = other.orientations;
+        gyroscope = copy(other.gyroscope);
+        acceleration = copy(other.acceleration);
+        magnetic = copy(other.magnetic);
+    }
+
+    /**
+     * A copy whose sensor samples can be changed without changing these.
+     */
+    public FusionSamples copy()
+    {
+        return new FusionSamples(this);
+    }
+
+    /**
+     * Read the orientations of a logged session. The sensor samples are the
+     * ones that would give exactly those orientations, not what the device
+     * measured.
+     */
+    public static FusionSamples fromSession(File file) throws IOException
+    {
+        float[][] orientations = new float[1024][];
+        long[] timestamps = new long[1024];
+        int count = 0;
+
+        try (SessionReader reader = SessionReader.open(file))
+        {
+            float[] values = new float[3];
+
+            while (reader.next(values))
+            {
+                if (count == orientations.length)
+                {
+                    orientations = Arrays.copyOf(orientations, count * 2);
+                    timestamps = Arrays.copyOf(timestamps, count * 2);
+                }
+
+                orientations[count] = values.clone();
+                timestamps[count] = reader.getTimestamp();
+                count++;
+            }
+        }
+
+        if (count < 2)
+        {
+            throw new IOException("Not enough samples in " + file);
+        }
+
+        return new FusionSamples(orientations, timestamps, count);
+    }
+
+    public int next(int index)
+    {
+        return index + 1 < count ? index + 1 : 0;
+    }
+
+    private static float[][] copy(float[][] values)
+    {
+        float[][] copy = new float[values.length][];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            copy[i] = values[i].clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * The constant rates that rotate by a quaternion in dt seconds.
+     */
+    private static void toRates(float[] delta, float dt, float[] rates)
+    {
+        // q and -q are the same rotation, take the shorter way round
+        float sign = delta[0] < 0 ? -1 : 1;
+
+        float w = Math.min(1, sign * delta[0]);
+        float sinHalfAngle = (float) Math.sqrt(1 - w * w);
+        float angle = 2 * (float) Math.atan2(sinHalfAngle, w);
+
+        for (int j = 0; j < 3; j++)
+        {
+            rates[j] = sinHalfAngle > 0.0000001f ? sign * delta[j + 1] / sinHalfAngle * angle / dt : 0;
+        }
+    }
+}
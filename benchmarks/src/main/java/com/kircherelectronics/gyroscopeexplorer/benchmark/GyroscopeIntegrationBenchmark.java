@@ -0,0 +1,100 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.filter.GyroscopeBiasEstimator;
+import com.kircherelectronics.gyroscopeexplorer.fusion.Quaternions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The cost of the work done for every gyroscope event: integrating the rates
+ * into the rotation, integrating then converting to the azimuth, pitch and
+ * roll the gauges display, and removing the estimated bias first. The sample
+ * values stand in for the rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GyroscopeIntegrationBenchmark
+{
+    private static final float DT = Samples.PERIOD / 1000000000.0f;
+
+    private Samples samples;
+    private final float[] rotation = new float[4];
+    private final float[] orientation = new float[3];
+    private final GyroscopeBiasEstimator biasEstimator = new GyroscopeBiasEstimator();
+    private final float[] corrected = new float[3];
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        samples = new Samples();
+        Quaternions.identity(rotation);
+        biasEstimator.reset();
+        index = 0;
+    }
+
+    @Benchmark
+    public float[] integrate()
+    {
+        index = Samples.next(index);
+        float[] rates = samples.values[index];
+
+        Quaternions.integrate(rotation, rates[0], rates[1], rates[2], DT, rotation);
+
+        return rotation;
+    }
+
+    @Benchmark
+    public float[] integrateToOrientation()
+    {
+        index = Samples.next(index);
+        float[] rates = samples.values[index];
+
+        Quaternions.integrate(rotation, rates[0], rates[1], rates[2], DT, rotation);
+        Quaternions.toOrientation(rotation, orientation);
+
+        return orientation;
+    }
+
+    @Benchmark
+    public float[] integrateWithBiasCorrection()
+    {
+        index = Samples.next(index);
+        float[] rates = biasEstimator.filter(samples.values[index], samples.timestamps[index], corrected);
+
+        Quaternions.integrate(rotation, rates[0], rates[1], rates[2], DT, rotation);
+
+        return rotation;
+    }
+}
@@ -0,0 +1,114 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.fsensor.filter.gyroscope.fusion.kalman.OrientationFusedKalman;
+import com.kircherelectronics.fsensor.util.rotation.RotationUtil;
+import com.kircherelectronics.gyroscopeexplorer.fusion.KalmanFusion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The time of one predict and update of the in-project Kalman filter against
+ * the one FSensor's KalmanGyroscopeSensor runs, with a new acceleration and
+ * magnetic field for every gyroscope event. FusionAccuracy checks the two
+ * give the same orientations.
+ *
+ * The samples are synthetic unless a logged session is given with
+ * -p session=/path/to/log.csv, in which case its orientations are replayed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KalmanFusionBenchmark
+{
+    @Param({""})
+    public String session;
+
+    private FusionSamples samples;
+    private KalmanFusion fusion;
+    private OrientationFusedKalman fSensorFusion;
+    private final float[] orientation = new float[3];
+    private long timestamp;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        samples = session.isEmpty() ? new FusionSamples() : FusionSamples.fromSession(new File(session));
+
+        fusion = new KalmanFusion();
+        fusion.setAcceleration(samples.acceleration[0]);
+        fusion.setMagnetic(samples.magnetic[0]);
+        fusion.setGyroscope(samples.gyroscope[0], 0, orientation);
+
+        fSensorFusion = new OrientationFusedKalman();
+        fSensorFusion.startFusion();
+        fSensorFusion.setBaseOrientation(RotationUtil.getOrientationVectorFromAccelerationMagnetic(samples.acceleration[0], samples.magnetic[0]));
+        fSensorFusion.calculateFusedOrientation(samples.gyroscope[0], 0, samples.acceleration[0], samples.magnetic[0]);
+
+        timestamp = 0;
+        index = 0;
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        fSensorFusion.stopFusion();
+    }
+
+    @Benchmark
+    public float[] inProject()
+    {
+        index = samples.next(index);
+        // The replayed stream loops, so keep time moving forwards
+        timestamp += samples.periods[index];
+
+        fusion.setAcceleration(samples.acceleration[index]);
+        fusion.setMagnetic(samples.magnetic[index]);
+        fusion.setGyroscope(samples.gyroscope[index], timestamp, orientation);
+
+        return orientation;
+    }
+
+    @Benchmark
+    public float[] fsensor()
+    {
+        index = samples.next(index);
+        timestamp += samples.periods[index];
+
+        return fSensorFusion.calculateFusedOrientation(samples.gyroscope[index], timestamp, samples.acceleration[index], samples.magnetic[index]);
+    }
+}
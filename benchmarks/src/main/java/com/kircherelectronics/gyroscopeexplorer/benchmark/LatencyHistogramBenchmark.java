@@ -0,0 +1,94 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.util.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The cost of recording a latency in a {@link LatencyHistogram}, which the
+ * processing, UI and data logger threads pay for every sample, alone and
+ * with the three threads recording into the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyHistogramBenchmark
+{
+    private LatencyHistogram histogram;
+
+    @State(Scope.Thread)
+    public static class Latencies
+    {
+        private final long[] values = new long[1024];
+        private int index;
+
+        @Setup
+        public void setUp()
+        {
+            // Mostly a few milliseconds, now and then a frame or more late
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = 1000000L + (i * 7919L) % 3000000L + (i % 64 == 0 ? 20000000L : 0);
+            }
+
+            index = 0;
+        }
+
+        long next()
+        {
+            index = (index + 1) & (values.length - 1);
+
+            return values[index];
+        }
+    }
+
+    @Setup
+    public void setUp()
+    {
+        histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public void record(Latencies latencies)
+    {
+        histogram.record(latencies.next());
+    }
+
+    @Benchmark
+    @Threads(3)
+    public void recordContended(Latencies latencies)
+    {
+        histogram.record(latencies.next());
+    }
+}
@@ -0,0 +1,86 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.fsensor.filter.averaging.MeanFilter;
+import com.kircherelectronics.gyroscopeexplorer.filter.SlidingWindowMeanFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The cost of smoothing one sample with FSensor's mean filter and with the
+ * {@link SlidingWindowMeanFilter}. Both keep the samples of the last time
+ * constant seconds, so longer time constants mean larger windows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeanFilterBenchmark
+{
+    @Param({"0.1", "0.5", "2.0"})
+    public float timeConstant;
+
+    private Samples samples;
+    private MeanFilter meanFilter;
+    private SlidingWindowMeanFilter slidingWindowMeanFilter;
+    private final float[] output = new float[3];
+    private int index;
+    private long timestamp;
+
+    @Setup
+    public void setUp()
+    {
+        samples = new Samples();
+        meanFilter = new MeanFilter(timeConstant);
+        slidingWindowMeanFilter = new SlidingWindowMeanFilter(timeConstant);
+        index = 0;
+        timestamp = 0;
+    }
+
+    @Benchmark
+    public float[] filter()
+    {
+        index = Samples.next(index);
+
+        return meanFilter.filter(samples.values[index]);
+    }
+
+    @Benchmark
+    public float[] slidingWindow()
+    {
+        index = Samples.next(index);
+        // The sample timestamps start over when the index wraps
+        timestamp += Samples.PERIOD;
+
+        return slidingWindowMeanFilter.filter(samples.values[index], timestamp, output);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import java.util.Random;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A repeatable stream of orientation samples that looks like a device held
+ * in the hand: a slow random walk with sensor noise, delivered every 5 ms
+ * with some jitter.
+ */
+public final class Samples
+{
+    // A power of two so the index can wrap with a mask
+    public static final int COUNT = 16 * 1024;
+
+    public static final long PERIOD = 5000000L;
+    private static final long JITTER = 200000L;
+
+    public final long[] timestamps = new long[COUNT];
+    public final float[][] values = new float[COUNT][3];
+
+    public Samples()
+    {
+        Random random = new Random(42);
+
+        long timestamp = 0;
+        double[] angle = new double[3];
+
+        for (int i = 0; i < COUNT; i++)
+        {
+            timestamp += PERIOD + (long) ((random.nextDouble() * 2 - 1) * JITTER);
+            timestamps[i] = timestamp;
+
+            for (int j = 0; j < 3; j++)
+            {
+                angle[j] += random.nextGaussian() * 0.002;
+                values[i][j] = (float) (angle[j] + random.nextGaussian() * 0.0005);
+            }
+        }
+    }
+
+    public static int next(int index)
+    {
+        return (index + 1) & (COUNT - 1);
+    }
+}
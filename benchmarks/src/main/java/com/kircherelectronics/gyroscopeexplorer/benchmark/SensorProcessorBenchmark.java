@@ -0,0 +1,110 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerManager;
+import com.kircherelectronics.gyroscopeexplorer.sensor.SensorProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The work done on the processing thread for every sample by
+ * {@link SensorProcessor#process(float[], long)}: optionally smooth the
+ * orientation, hand it to the data logger when logging and publish it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorProcessorBenchmark
+{
+    @Param({"false", "true"})
+    public boolean meanFilterEnabled;
+
+    @Param({"false", "true"})
+    public boolean logData;
+
+    private Samples samples;
+    private BenchmarkContext context;
+    private DataLoggerManager dataLogger;
+    private SensorProcessor sensorProcessor;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUpTrial()
+    {
+        samples = new Samples();
+        context = new BenchmarkContext();
+        dataLogger = new DataLoggerManager(context);
+        dataLogger.setSampleExact(true);
+        sensorProcessor = new SensorProcessor(dataLogger);
+        sensorProcessor.setMeanFilterEnabled(meanFilterEnabled);
+        sensorProcessor.setLogData(logData);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration()
+    {
+        if (logData)
+        {
+            dataLogger.startDataLog();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration()
+    {
+        if (logData)
+        {
+            dataLogger.stopDataLog();
+        }
+
+        context.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        context.delete();
+    }
+
+    @Benchmark
+    public long process()
+    {
+        index = Samples.next(index);
+
+        sensorProcessor.process(samples.values[index], samples.timestamps[index]);
+
+        return sensorProcessor.getOrientation().getSequence();
+    }
+}
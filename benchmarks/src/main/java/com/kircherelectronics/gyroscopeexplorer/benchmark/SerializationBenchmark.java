@@ -0,0 +1,129 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.gyroscopeexplorer.datalogger.BinaryDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.CompressedDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.CsvDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerInterface;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DeltaLogFormat;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.MappedDataLogger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The cost of writing one row on the writer thread for each log format. A
+ * new log is started for every iteration and closed after it, so each
+ * iteration writes a realistic file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark
+{
+    @Param({"csv", "csv-batched", "binary", "mapped", "delta"})
+    public String format;
+
+    private Samples samples;
+    private BenchmarkContext context;
+    private Deflater deflater;
+    private byte[] deflaterBuffer;
+    private DataLoggerInterface dataLogger;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUpTrial()
+    {
+        samples = new Samples();
+        context = new BenchmarkContext();
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflaterBuffer = new byte[8 * 1024];
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration()
+    {
+        dataLogger = createDataLogger();
+        dataLogger.setHeaders(Arrays.asList("Timestamp", "X", "Y", "Z"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration()
+    {
+        dataLogger.writeToFile();
+        context.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        deflater.end();
+        context.delete();
+    }
+
+    @Benchmark
+    public void addRow()
+    {
+        index = Samples.next(index);
+
+        dataLogger.addRow(samples.timestamps[index], samples.values[index]);
+    }
+
+    private DataLoggerInterface createDataLogger()
+    {
+        File file = context.newFile("benchmark." + format);
+
+        switch (format)
+        {
+            case "csv":
+                return new CsvDataLogger(context, file);
+            case "csv-batched":
+                CsvDataLogger csvDataLogger = new CsvDataLogger(context, file);
+                csvDataLogger.setBatching(64, 500, CsvDataLogger.DURABILITY_NONE);
+                return csvDataLogger;
+            case "binary":
+                return new BinaryDataLogger(context, file, "BENCHMARK", 0);
+            case "mapped":
+                return new MappedDataLogger(context, file, "BENCHMARK", 0);
+            case "delta":
+                return new CompressedDataLogger(context, file, deflater, deflaterBuffer, "BENCHMARK", 0,
+                        DeltaLogFormat.DEFAULT_QUANTUM);
+            default:
+                throw new IllegalStateException("Unknown format " + format);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.kircherelectronics.gyroscopeexplorer;
+
+import java.lang.management.ManagementFactory;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Counts the bytes the current thread allocates while running a task, with
+ * the HotSpot thread allocation counters the JMH gc profiler reads too.
+ *
+ * The JVM may allocate a few hundred bytes once while it compiles the task,
+ * so the result is an average per run, like the profiler's
+ * gc.alloc.rate.norm. Any object the task allocates itself is at least 16
+ * bytes per run, so less than {@link #MAX_BYTES_PER_RUN} means it allocates
+ * nothing.
+ */
+public final class AllocationCounter
+{
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static final double MAX_BYTES_PER_RUN = 1.0;
+
+    private static final int WARM_UP_ITERATIONS = 1000;
+
+    private AllocationCounter()
+    {
+    }
+
+    /**
+     * Run a task, once to warm it up and once measured.
+     *
+     * @param iterations the number of times the task is run while measured.
+     * @return the bytes allocated by the current thread while measured, per
+     * run.
+     */
+    public static double measure(Runnable task, int iterations)
+    {
+        // Anything allocated on the first runs, like loading classes, is
+        // left out
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++)
+        {
+            task.run();
+        }
+
+        long id = Thread.currentThread().getId();
+
+        // Reading the counter may allocate itself
+        long overhead = -THREADS.getThreadAllocatedBytes(id) + THREADS.getThreadAllocatedBytes(id);
+
+        long start = THREADS.getThreadAllocatedBytes(id);
+
+        for (int i = 0; i < iterations; i++)
+        {
+            task.run();
+        }
+
+        return (double) (THREADS.getThreadAllocatedBytes(id) - start - overhead) / iterations;
+    }
+}
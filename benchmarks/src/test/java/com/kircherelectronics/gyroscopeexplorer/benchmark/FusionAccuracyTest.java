@@ -0,0 +1,86 @@
+package com.kircherelectronics.gyroscopeexplorer.benchmark;
+
+import com.kircherelectronics.fsensor.filter.gyroscope.fusion.kalman.OrientationFusedKalman;
+import com.kircherelectronics.gyroscopeexplorer.fusion.KalmanFusion;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Holds the in-project Kalman filter to FSensor's on the synthetic
+ * trajectory of {@link Samples}, with the gyroscope bias and noise of
+ * {@link FusionAccuracy}.
+ */
+public class FusionAccuracyTest
+{
+    // About five times what the filter manages
+    private static final double MAX_RMS = Math.toRadians(0.5);
+
+    // How much worse than FSensor's filter it may be
+    private static final double MAX_RMS_RATIO = 1.1;
+
+    private static FusionSamples samples;
+    private static FusionSamples noisy;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        samples = new FusionSamples();
+        noisy = FusionAccuracy.addNoise(samples, new Random(42));
+    }
+
+    @Test
+    public void kalmanFollowsTheTrajectory()
+    {
+        FusionAccuracy.Result result = measureKalman();
+
+        assertTrue("rms " + Math.toDegrees(result.rms) + " deg", result.rms < MAX_RMS);
+    }
+
+    @Test
+    public void kalmanIsNoWorseThanFSensor()
+    {
+        OrientationFusedKalman kalman = new OrientationFusedKalman();
+        kalman.startFusion();
+
+        FusionAccuracy.Result fSensor;
+
+        try
+        {
+            fSensor = FusionAccuracy.measure(samples, noisy, FusionAccuracy.fSensorKalman(kalman, noisy));
+        } finally
+        {
+            kalman.stopFusion();
+        }
+
+        FusionAccuracy.Result result = measureKalman();
+
+        assertTrue("rms " + Math.toDegrees(result.rms) + " deg, FSensor " + Math.toDegrees(fSensor.rms) + " deg",
+                result.rms <= fSensor.rms * MAX_RMS_RATIO);
+    }
+
+    private static FusionAccuracy.Result measureKalman()
+    {
+        return FusionAccuracy.measure(samples, noisy, FusionAccuracy.engine(new KalmanFusion()));
+    }
+}
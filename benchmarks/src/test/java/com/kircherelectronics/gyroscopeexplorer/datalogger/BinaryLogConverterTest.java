@@ -0,0 +1,39 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+public class BinaryLogConverterTest
+{
+    @Test
+    public void csvNameReplacesTheExtension()
+    {
+        assertEquals("gyroscope.csv", BinaryLogConverter.getCsvName("gyroscope.bin"));
+        assertEquals("gyroscope.csv", BinaryLogConverter.getCsvName("gyroscope.delta.gz"));
+        assertEquals("gyroscope.csv", BinaryLogConverter.getCsvName("gyroscope"));
+    }
+
+    @Test
+    public void csvNameKeepsDotsInTheName()
+    {
+        assertEquals("gyroscope-2017.06.01.csv", BinaryLogConverter.getCsvName("gyroscope-2017.06.01.bin"));
+        assertEquals("gyroscope-2017.06.01.csv", BinaryLogConverter.getCsvName("gyroscope-2017.06.01.delta.gz"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Checks what reaches the file while the log is still open. The log is never
+ * closed, that needs a context to notify the media scanner.
+ */
+public class CsvDataLoggerTest
+{
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    // The gzip header written before the deflate stream
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private static final long BATCH_INTERVAL = 500;
+    private static final long BATCH_INTERVAL_NANOS = BATCH_INTERVAL * 1000000;
+
+    private static final String SEPARATOR = System.getProperty("line.separator");
+    private static final String HEADER = "Timestamp,X,Y,Z" + SEPARATOR;
+    private static final String ROW = "0.005000,0.1000000,0.2000000,0.3000000" + SEPARATOR;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("gyroscope", ".csv");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void batchWaitsForItsInterval() throws IOException
+    {
+        CsvDataLogger logger = new CsvDataLogger(null, file);
+        addRow(logger);
+
+        logger.flushIfDue(System.nanoTime());
+
+        // Even the header waits for the first batch
+        assertEquals("", read());
+
+        logger.flushIfDue(System.nanoTime() + BATCH_INTERVAL_NANOS);
+
+        assertEquals(HEADER + ROW, read());
+    }
+
+    @Test
+    public void gzippedBatchReachesTheFile() throws IOException, DataFormatException
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        CsvDataLogger logger = new CsvDataLogger(null, file, deflater, new byte[8 * 1024]);
+        addRow(logger);
+
+        logger.flushIfDue(System.nanoTime() + BATCH_INTERVAL_NANOS);
+
+        // Without a sync flush the deflater would still hold all of it
+        assertEquals(HEADER + ROW, inflate());
+
+        deflater.end();
+    }
+
+    private void addRow(CsvDataLogger logger)
+    {
+        logger.setBatching(64, BATCH_INTERVAL, CsvDataLogger.DURABILITY_FSYNC);
+        logger.setHeaders(Arrays.asList("Timestamp", "X", "Y", "Z"));
+        logger.addRow(5000000L, new float[]{0.1f, 0.2f, 0.3f});
+    }
+
+    private String read() throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), US_ASCII);
+    }
+
+    private String inflate() throws IOException, DataFormatException
+    {
+        byte[] compressed = Files.readAllBytes(file.toPath());
+
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed, GZIP_HEADER_SIZE, compressed.length - GZIP_HEADER_SIZE);
+
+        byte[] text = new byte[1024];
+        int length = inflater.inflate(text);
+        inflater.end();
+
+        return new String(text, 0, length, US_ASCII);
+    }
+}
@@ -0,0 +1,94 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import com.kircherelectronics.gyroscopeexplorer.AllocationCounter;
+import com.kircherelectronics.gyroscopeexplorer.benchmark.BenchmarkContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+public class DataLoggerManagerTest
+{
+    private static final int ITERATIONS = 100000;
+
+    private BenchmarkContext context;
+    private DataLoggerManager dataLogger;
+
+    private final float[] rotation = new float[3];
+    private long timestamp = 0;
+
+    private final Runnable setRotation = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            timestamp += 5000000L;
+            rotation[0] = timestamp * 1e-9f;
+
+            dataLogger.setRotation(rotation, timestamp);
+        }
+    };
+
+    @Before
+    public void setUp()
+    {
+        context = new BenchmarkContext();
+        dataLogger = new DataLoggerManager(context);
+    }
+
+    @After
+    public void tearDown()
+    {
+        context.delete();
+    }
+
+    @Test
+    public void setRotationDoesNotAllocateWhenSampleExact()
+    {
+        dataLogger.setSampleExact(true);
+        dataLogger.startDataLog();
+
+        try
+        {
+            // The queue fills up when the writer falls behind, dropping
+            // samples must not allocate either
+            assertEquals(0, AllocationCounter.measure(setRotation, ITERATIONS), AllocationCounter.MAX_BYTES_PER_RUN);
+        } finally
+        {
+            dataLogger.stopDataLog();
+        }
+    }
+
+    @Test
+    public void setRotationDoesNotAllocateWhenPolling()
+    {
+        dataLogger.setSampleExact(false);
+        dataLogger.startDataLog();
+
+        try
+        {
+            assertEquals(0, AllocationCounter.measure(setRotation, ITERATIONS), AllocationCounter.MAX_BYTES_PER_RUN);
+        } finally
+        {
+            dataLogger.stopDataLog();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Round trips a 200 Hz orientation that wanders over the whole range of
+ * angles, up to pi where the float resolution is coarsest.
+ */
+public class DeltaLogFormatTest
+{
+    private static final int SAMPLES = 10000;
+    private static final long SAMPLE_PERIOD = 5000000L;
+
+    @Test
+    public void headerRecordsTheQuantum() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeltaLogFormat.writeHeader(out, "GYROSCOPE_ONLY", 5000, 1234L, 1e-4f);
+
+        assertEquals(DeltaLogFormat.getHeaderSize("GYROSCOPE_ONLY"), out.size());
+
+        DeltaLogFormat.Header header = DeltaLogFormat.readHeader(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1e-4f, header.quantum, 0);
+        assertEquals("GYROSCOPE_ONLY", header.mode);
+        assertEquals(5000, header.samplingPeriodUs);
+        assertEquals(1234L, header.startTime);
+    }
+
+    @Test
+    public void valuesAreWithinHalfAStep() throws IOException
+    {
+        roundTrip(DeltaLogFormat.DEFAULT_QUANTUM);
+        roundTrip(1e-4f);
+    }
+
+    private void roundTrip(float quantum) throws IOException
+    {
+        float[][] values = new float[SAMPLES][3];
+        Random random = new Random(42);
+
+        for (int i = 1; i < SAMPLES; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                float value = values[i - 1][j] + (float) random.nextGaussian() * 0.01f;
+                values[i][j] = Math.max(-(float) Math.PI, Math.min((float) Math.PI, value));
+            }
+        }
+
+        DeltaLogFormat.Encoder encoder = new DeltaLogFormat.Encoder(quantum);
+        byte[] record = new byte[DeltaLogFormat.MAX_RECORD_SIZE];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            out.write(record, 0, encoder.encode(i * SAMPLE_PERIOD, values[i], record));
+        }
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        DeltaLogFormat.Decoder decoder = new DeltaLogFormat.Decoder(in, quantum);
+        float[] decoded = new float[3];
+
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            assertEquals(i * SAMPLE_PERIOD, decoder.decode(decoded));
+
+            for (int j = 0; j < 3; j++)
+            {
+                // Half a step, and the float rounding of the decoded value
+                assertEquals(values[i][j], decoded[j], quantum / 2 + Math.ulp((float) Math.PI));
+            }
+        }
+
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,115 @@
+package com.kircherelectronics.gyroscopeexplorer.datalogger;
+
+import com.kircherelectronics.gyroscopeexplorer.benchmark.BenchmarkContext;
+import com.kircherelectronics.gyroscopeexplorer.replay.SessionReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads back mapped logs that were never closed, as after a crash, when the
+ * file still holds the zeroed tail of the last preallocated segment.
+ */
+public class MappedDataLoggerTest
+{
+    private static final int ROWS = 1000;
+
+    private static final long SAMPLE_PERIOD = 5000000L;
+
+    private BenchmarkContext context;
+    private File file;
+    private MappedDataLogger dataLogger;
+
+    @Before
+    public void setUp()
+    {
+        context = new BenchmarkContext();
+        file = context.newFile("log" + BinaryLogFormat.FILE_EXTENSION);
+        dataLogger = new MappedDataLogger(context, file, "Gyroscope", 0);
+        dataLogger.setHeaders(Collections.<String>emptyList());
+
+        float[] values = new float[3];
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            values[0] = i;
+            values[1] = -i;
+            values[2] = 0;
+
+            dataLogger.addRow((i + 1) * SAMPLE_PERIOD, values);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        dataLogger.writeToFile();
+        context.delete();
+    }
+
+    @Test
+    public void sessionReaderStopsAtUnwrittenTail() throws IOException
+    {
+        assertTrue(file.length() > BinaryLogFormat.getHeaderSize("Gyroscope") + ROWS * BinaryLogFormat.RECORD_SIZE);
+
+        SessionReader reader = SessionReader.open(file);
+        float[] values = new float[3];
+
+        try
+        {
+            for (int i = 0; i < ROWS; i++)
+            {
+                assertTrue(reader.next(values));
+                assertEquals((i + 1) * SAMPLE_PERIOD, reader.getTimestamp());
+                assertArrayEquals(new float[]{i, -i, 0}, values, 0);
+            }
+
+            assertFalse(reader.next(values));
+        } finally
+        {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void converterStopsAtUnwrittenTail() throws IOException
+    {
+        File csv = context.newFile("log.csv");
+
+        BinaryLogConverter.toCsv(file, csv);
+
+        List<String> lines = Files.readAllLines(csv.toPath());
+
+        // The column names and one line per row
+        assertEquals(ROWS + 1, lines.size());
+        assertTrue(lines.get(ROWS).endsWith(",999.0,-999.0,0.0"));
+    }
+}
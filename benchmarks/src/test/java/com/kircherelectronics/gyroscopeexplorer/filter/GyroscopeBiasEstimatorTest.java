@@ -0,0 +1,152 @@
+package com.kircherelectronics.gyroscopeexplorer.filter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Feeds the estimator a gyroscope at 200 Hz with a known bias and a little
+ * noise.
+ */
+public class GyroscopeBiasEstimatorTest
+{
+    private static final long SAMPLE_PERIOD = 5000000L;
+
+    private static final float NOISE = 0.002f;
+    private static final float EPSILON = 0.001f;
+
+    private static final float[] BIAS = {0.01f, -0.02f, 0.005f};
+
+    private final GyroscopeBiasEstimator estimator = new GyroscopeBiasEstimator();
+    private final Random random = new Random(42);
+
+    private final float[] rates = new float[3];
+    private final float[] output = new float[3];
+    private long timestamp = 0;
+
+    @Test
+    public void estimatesBiasWhileStill()
+    {
+        feed(BIAS, 10);
+
+        assertTrue(estimator.isStationary());
+        assertTrue(estimator.isCalibrated());
+        assertTrue(estimator.isConfirmed());
+        assertArrayEquals(BIAS, getBias(), EPSILON);
+
+        // What is left is the noise
+        assertArrayEquals(new float[3], output, 4 * NOISE);
+    }
+
+    @Test
+    public void steadyTurnIsNotBias()
+    {
+        feed(new float[]{0, 0, 0.2f}, 10);
+
+        assertFalse(estimator.isStationary());
+        assertFalse(estimator.isCalibrated());
+        assertArrayEquals(new float[3], getBias(), 0);
+    }
+
+    @Test
+    public void slowTurnIsNotBiasOnceCalibrated()
+    {
+        feed(BIAS, 10);
+
+        // Slower than the largest bias, but further from this one than it
+        // wanders
+        feed(new float[]{BIAS[0], BIAS[1], BIAS[2] + 0.03f}, 10);
+
+        assertFalse(estimator.isStationary());
+        assertArrayEquals(BIAS, getBias(), EPSILON);
+    }
+
+    @Test
+    public void setBiasIsUsedFromTheFirstSample()
+    {
+        estimator.setBias(BIAS);
+
+        assertTrue(estimator.isCalibrated());
+        assertFalse(estimator.isConfirmed());
+
+        estimator.filter(BIAS.clone(), SAMPLE_PERIOD, output);
+
+        assertArrayEquals(new float[3], output, 0);
+    }
+
+    @Test
+    public void staleBiasIsCorrected()
+    {
+        // Further from the real bias than a confirmed bias may move
+        estimator.setBias(new float[]{BIAS[0], BIAS[1], BIAS[2] + 0.03f});
+
+        feed(BIAS, 15);
+
+        assertTrue(estimator.isConfirmed());
+        assertArrayEquals(BIAS, getBias(), EPSILON);
+    }
+
+    @Test
+    public void resetForgetsBias()
+    {
+        feed(BIAS, 10);
+
+        estimator.reset();
+
+        assertFalse(estimator.isStationary());
+        assertFalse(estimator.isCalibrated());
+        assertFalse(estimator.isConfirmed());
+        assertArrayEquals(new float[3], getBias(), 0);
+    }
+
+    /**
+     * Feed the estimator rates with noise added.
+     *
+     * @param mean    the x, y and z rates in rad/s.
+     * @param seconds how long to feed them for.
+     */
+    private void feed(float[] mean, int seconds)
+    {
+        long end = timestamp + seconds * 1000000000L;
+
+        while (timestamp < end)
+        {
+            timestamp += SAMPLE_PERIOD;
+
+            for (int i = 0; i < 3; i++)
+            {
+                rates[i] = mean[i] + (float) random.nextGaussian() * NOISE;
+            }
+
+            estimator.filter(rates, timestamp, output);
+        }
+    }
+
+    private float[] getBias()
+    {
+        float[] bias = new float[3];
+        estimator.getBias(bias);
+
+        return bias;
+    }
+}
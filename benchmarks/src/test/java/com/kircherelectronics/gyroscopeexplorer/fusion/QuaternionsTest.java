@@ -0,0 +1,382 @@
+package com.kircherelectronics.gyroscopeexplorer.fusion;
+
+import android.hardware.SensorManager;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Checks the quaternion math against the rotation matrices and orientations
+ * {@link SensorManager} computes, over random rotations.
+ */
+public class QuaternionsTest
+{
+    private static final int ROTATIONS = 1000;
+
+    private static final float EPSILON = 1e-5f;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void multiplyByIdentityIsUnchanged()
+    {
+        float[] identity = new float[4];
+        float[] q = new float[4];
+        float[] out = new float[4];
+
+        Quaternions.identity(identity);
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            Quaternions.multiply(q, identity, out);
+            assertArrayEquals(q, out, EPSILON);
+
+            Quaternions.multiply(identity, q, out);
+            assertArrayEquals(q, out, EPSILON);
+        }
+    }
+
+    @Test
+    public void multiplyComposesRotationMatrices()
+    {
+        float[] a = new float[4];
+        float[] b = new float[4];
+        float[] ab = new float[4];
+
+        float[] ra = new float[9];
+        float[] rb = new float[9];
+        float[] rab = new float[9];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(a);
+            randomRotation(b);
+
+            Quaternions.multiply(a, b, ab);
+
+            Quaternions.toRotationMatrix(a, ra);
+            Quaternions.toRotationMatrix(b, rb);
+            Quaternions.toRotationMatrix(ab, rab);
+
+            assertArrayEquals(multiplyMatrices(ra, rb), rab, EPSILON);
+        }
+    }
+
+    @Test
+    public void multiplyByConjugateIsIdentity()
+    {
+        float[] identity = new float[4];
+        float[] q = new float[4];
+        float[] inverse = new float[4];
+        float[] out = new float[4];
+
+        Quaternions.identity(identity);
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            Quaternions.conjugate(q, inverse);
+            Quaternions.multiply(q, inverse, out);
+
+            assertArrayEquals(identity, out, EPSILON);
+        }
+    }
+
+    @Test
+    public void normalizeKeepsDirection()
+    {
+        float[] q = new float[4];
+        float[] scaled = new float[4];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            float scale = 0.1f + random.nextFloat() * 10;
+
+            for (int j = 0; j < 4; j++)
+            {
+                scaled[j] = q[j] * scale;
+            }
+
+            Quaternions.normalize(scaled, scaled);
+
+            assertArrayEquals(q, scaled, EPSILON);
+        }
+    }
+
+    @Test
+    public void integrateAtZeroRateIsUnchanged()
+    {
+        float[] q = new float[4];
+        float[] out = new float[4];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            Quaternions.integrate(q, 0, 0, 0, 0.01f, out);
+
+            assertArrayEquals(q, out, EPSILON);
+        }
+    }
+
+    @Test
+    public void integrateRotatesAboutTheDeviceAxis()
+    {
+        float[] q = new float[4];
+        float[] step = new float[4];
+        float[] expected = new float[4];
+        float[] out = new float[4];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            float wx = random.nextFloat() * 20 - 10;
+            float wy = random.nextFloat() * 20 - 10;
+            float wz = random.nextFloat() * 20 - 10;
+            float dt = random.nextFloat() * 0.02f;
+
+            // The rotation turned through in dt, applied in the device frame
+            float omega = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+            float sin = (float) Math.sin(omega * dt / 2) / omega;
+
+            step[0] = (float) Math.cos(omega * dt / 2);
+            step[1] = wx * sin;
+            step[2] = wy * sin;
+            step[3] = wz * sin;
+
+            Quaternions.multiply(q, step, expected);
+            Quaternions.integrate(q, wx, wy, wz, dt, out);
+
+            assertArrayEquals(expected, out, EPSILON);
+        }
+    }
+
+    @Test
+    public void integrateAccumulatesSteps()
+    {
+        float[] q = new float[4];
+        float[] expected = new float[4];
+
+        Quaternions.identity(q);
+
+        // A quarter turn about z in 100 steps
+        for (int i = 0; i < 100; i++)
+        {
+            Quaternions.integrate(q, 0, 0, (float) (Math.PI / 2), 0.01f, q);
+        }
+
+        expected[0] = (float) Math.cos(Math.PI / 4);
+        expected[3] = (float) Math.sin(Math.PI / 4);
+
+        assertArrayEquals(expected, q, EPSILON);
+    }
+
+    @Test
+    public void toRotationMatrixMatchesSensorManager()
+    {
+        float[] q = new float[4];
+        float[] rotationVector = new float[4];
+        float[] expected = new float[9];
+        float[] r = new float[9];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            // The rotation vector is stored x, y, z, w
+            rotationVector[0] = q[1];
+            rotationVector[1] = q[2];
+            rotationVector[2] = q[3];
+            rotationVector[3] = q[0];
+
+            SensorManager.getRotationMatrixFromVector(expected, rotationVector);
+            Quaternions.toRotationMatrix(q, r);
+
+            assertArrayEquals(expected, r, EPSILON);
+        }
+    }
+
+    @Test
+    public void fromRotationMatrixIsTheInverse()
+    {
+        float[] q = new float[4];
+        float[] r = new float[9];
+        float[] out = new float[4];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            Quaternions.toRotationMatrix(q, r);
+            Quaternions.fromRotationMatrix(r, out);
+
+            assertSameRotation(q, out);
+        }
+    }
+
+    @Test
+    public void fromAccelerationMagneticMatchesSensorManager()
+    {
+        float[] acceleration = new float[3];
+        float[] magnetic = new float[3];
+        float[] expected = new float[9];
+        float[] q = new float[4];
+        float[] r = new float[9];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                acceleration[j] = random.nextFloat() * 20 - 10;
+                magnetic[j] = random.nextFloat() * 100 - 50;
+            }
+
+            boolean found = SensorManager.getRotationMatrix(expected, null, acceleration, magnetic);
+
+            assertEquals(found, Quaternions.fromAccelerationMagnetic(acceleration, magnetic, q));
+
+            if (found)
+            {
+                Quaternions.toRotationMatrix(q, r);
+
+                assertArrayEquals(expected, r, EPSILON * 10);
+            }
+        }
+    }
+
+    @Test
+    public void fromAccelerationMagneticFailsInFreeFall()
+    {
+        float[] q = new float[]{1, 0, 0, 0};
+
+        assertFalse(Quaternions.fromAccelerationMagnetic(new float[3], new float[]{0, 20, -40}, q));
+        assertArrayEquals(new float[]{1, 0, 0, 0}, q, 0);
+    }
+
+    @Test
+    public void toOrientationMatchesSensorManager()
+    {
+        float[] q = new float[4];
+        float[] r = new float[9];
+        float[] expected = new float[3];
+        float[] orientation = new float[3];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            randomRotation(q);
+
+            Quaternions.toRotationMatrix(q, r);
+            SensorManager.getOrientation(r, expected);
+            Quaternions.toOrientation(q, orientation);
+
+            assertArrayEquals(expected, orientation, EPSILON * 10);
+        }
+    }
+
+    @Test
+    public void fromOrientationIsTheInverse()
+    {
+        float[] orientation = new float[3];
+        float[] q = new float[4];
+        float[] out = new float[3];
+
+        for (int i = 0; i < ROTATIONS; i++)
+        {
+            // Pitch is kept off +/-90 degrees, where azimuth and roll are
+            // the same axis
+            orientation[0] = (float) ((random.nextFloat() * 2 - 1) * Math.PI);
+            orientation[1] = (float) ((random.nextFloat() * 2 - 1) * Math.PI * 0.45);
+            orientation[2] = (float) ((random.nextFloat() * 2 - 1) * Math.PI);
+
+            Quaternions.fromOrientation(orientation, q);
+
+            assertEquals(1, length(q), EPSILON);
+
+            Quaternions.toOrientation(q, out);
+
+            assertArrayEquals(orientation, out, EPSILON * 10);
+        }
+    }
+
+    /**
+     * A uniformly distributed unit quaternion.
+     */
+    private void randomRotation(float[] q)
+    {
+        do
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                q[i] = random.nextFloat() * 2 - 1;
+            }
+        }
+        while (length(q) > 1 || length(q) < 0.1f);
+
+        Quaternions.normalize(q, q);
+    }
+
+    private static float length(float[] q)
+    {
+        return (float) Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+    }
+
+    private static float[] multiplyMatrices(float[] a, float[] b)
+    {
+        float[] out = new float[9];
+
+        for (int row = 0; row < 3; row++)
+        {
+            for (int column = 0; column < 3; column++)
+            {
+                for (int i = 0; i < 3; i++)
+                {
+                    out[row * 3 + column] += a[row * 3 + i] * b[i * 3 + column];
+                }
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * q and -q are the same rotation.
+     */
+    private static void assertSameRotation(float[] expected, float[] actual)
+    {
+        float dot = 0;
+
+        for (int i = 0; i < 4; i++)
+        {
+            dot += expected[i] * actual[i];
+        }
+
+        assertEquals(1, Math.abs(dot), EPSILON);
+    }
+}
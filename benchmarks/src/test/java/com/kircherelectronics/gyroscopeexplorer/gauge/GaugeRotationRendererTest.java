@@ -0,0 +1,69 @@
+package com.kircherelectronics.gyroscopeexplorer.gauge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.kircherelectronics.gyroscopeexplorer.AllocationCounter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Draws with the framework's native graphics rather than Robolectric's
+ * shadows, which allocate a description of every call.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29, manifest = Config.NONE)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class GaugeRotationRendererTest
+{
+    private static final int FRAMES = 1000;
+    private static final int SIZE = 512;
+
+    private GaugeRotationRenderer renderer;
+    private Canvas canvas;
+    private int frame = 0;
+
+    private final Runnable drawFrame = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            // Sweep the horizon through the whole face, from empty to full
+            frame++;
+            renderer.setRotation((float) Math.sin(frame * 0.01), (float) Math.cos(frame * 0.013));
+            renderer.draw(canvas);
+        }
+    };
+
+    @Test
+    public void drawDoesNotAllocate()
+    {
+        renderer = new GaugeRotationRenderer();
+        renderer.setSize(SIZE, SIZE);
+        canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+
+        assertEquals(0, AllocationCounter.measure(drawFrame, FRAMES), AllocationCounter.MAX_BYTES_PER_RUN);
+    }
+}
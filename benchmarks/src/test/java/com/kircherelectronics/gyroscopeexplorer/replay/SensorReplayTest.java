@@ -0,0 +1,177 @@
+package com.kircherelectronics.gyroscopeexplorer.replay;
+
+import com.kircherelectronics.fsensor.observer.SensorSubject;
+import com.kircherelectronics.gyroscopeexplorer.benchmark.BenchmarkContext;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.BinaryDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.BinaryLogFormat;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.CompressedDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.CsvDataLogger;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DataLoggerInterface;
+import com.kircherelectronics.gyroscopeexplorer.datalogger.DeltaLogFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Replays a ten second session at 200 Hz, logged in each format.
+ */
+public class SensorReplayTest
+{
+    private static final int ROWS = 2000;
+
+    private static final long SAMPLE_PERIOD = 5000000L;
+
+    // CSV keeps seven decimals, as text
+    private static final float CSV_EPSILON = 1e-7f;
+    // Half a step and the float rounding of the decoded value
+    private static final float DELTA_EPSILON = DeltaLogFormat.DEFAULT_QUANTUM / 2 + 1e-6f;
+
+    // CSV timestamps are written in microseconds
+    private static final long TIMESTAMP_EPSILON = 1000;
+
+    private static final int STOP_ATTEMPTS = 10;
+
+    private BenchmarkContext context;
+
+    private final float[][] replayed = new float[ROWS][3];
+    private int count = 0;
+
+    private final SensorSubject.SensorObserver observer = new SensorSubject.SensorObserver()
+    {
+        @Override
+        public void onSensorChanged(float[] values)
+        {
+            if (count < ROWS)
+            {
+                System.arraycopy(values, 0, replayed[count], 0, 3);
+            }
+
+            count++;
+        }
+    };
+
+    @Before
+    public void setUp()
+    {
+        context = new BenchmarkContext();
+    }
+
+    @After
+    public void tearDown()
+    {
+        context.delete();
+    }
+
+    @Test
+    public void replaysCsvSession()
+    {
+        File file = context.newFile("session.csv");
+        CsvDataLogger dataLogger = new CsvDataLogger(context, file);
+        dataLogger.setBatching(64, 0, CsvDataLogger.DURABILITY_NONE);
+
+        replay(write(dataLogger), CSV_EPSILON);
+    }
+
+    @Test
+    public void replaysBinarySession()
+    {
+        File file = context.newFile("session" + BinaryLogFormat.FILE_EXTENSION);
+
+        replay(write(new BinaryDataLogger(context, file, "GYROSCOPE_ONLY", 0)), 0);
+    }
+
+    @Test
+    public void replaysDeltaSession()
+    {
+        File file = context.newFile("session" + DeltaLogFormat.FILE_EXTENSION);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        replay(write(new CompressedDataLogger(context, file, deflater, new byte[8 * 1024], "GYROSCOPE_ONLY", 0,
+                DeltaLogFormat.DEFAULT_QUANTUM)), DELTA_EPSILON);
+
+        deflater.end();
+    }
+
+    @Test
+    public void stopRightAfterStartStops()
+    {
+        File file = context.newFile("session" + BinaryLogFormat.FILE_EXTENSION);
+        write(new BinaryDataLogger(context, file, "GYROSCOPE_ONLY", 0));
+
+        // Often enough that stop() lands before the replay thread has run
+        for (int i = 0; i < STOP_ATTEMPTS; i++)
+        {
+            SensorReplay replay = new SensorReplay(file);
+            replay.register(observer);
+
+            // In real time the whole session would take ten seconds
+            replay.start();
+            replay.stop();
+
+            assertFalse(replay.isRunning());
+            assertTrue(replay.getSampleCount() < ROWS);
+        }
+    }
+
+    private File write(DataLoggerInterface dataLogger)
+    {
+        dataLogger.setHeaders(Arrays.asList("Timestamp", "X", "Y", "Z"));
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            dataLogger.addRow((i + 1) * SAMPLE_PERIOD, getValues(i));
+        }
+
+        return new File(dataLogger.writeToFile());
+    }
+
+    private void replay(File file, float epsilon)
+    {
+        SensorReplay replay = new SensorReplay(file);
+        replay.register(observer);
+        replay.setSpeed(SensorReplay.AS_FAST_AS_POSSIBLE);
+
+        replay.run();
+
+        assertFalse(replay.isRunning());
+        assertEquals(ROWS, replay.getSampleCount());
+        assertEquals(ROWS, count);
+        assertEquals(ROWS * SAMPLE_PERIOD, replay.getTimestamp(), TIMESTAMP_EPSILON);
+
+        for (int i = 0; i < ROWS; i++)
+        {
+            assertArrayEquals(getValues(i), replayed[i], epsilon);
+        }
+    }
+
+    private static float[] getValues(int i)
+    {
+        return new float[]{(float) Math.sin(i * 0.01), (float) Math.cos(i * 0.013), i * 1e-4f};
+    }
+}
@@ -0,0 +1,165 @@
+package com.kircherelectronics.gyroscopeexplorer.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright 2013-2017, Kaleb Kircher - Kircher Engineering, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Checks the bucket layout and percentiles against exact percentiles of the
+ * same latencies.
+ */
+public class LatencyHistogramTest
+{
+    // Each power of two is split into 16 buckets
+    private static final double BUCKET_WIDTH = 1.0 / 16;
+
+    // About 68 seconds
+    private static final long MAX_VALUE = (1L << 36) - 1;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramIsZero()
+    {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void smallLatenciesAreExact()
+    {
+        for (long latency = 0; latency < 32; latency++)
+        {
+            histogram.reset();
+            histogram.record(latency);
+            histogram.record(latency);
+
+            assertEquals(latency, histogram.getValueAtPercentile(50));
+        }
+
+        histogram.reset();
+
+        for (long latency = 1; latency <= 32; latency++)
+        {
+            histogram.record(latency);
+        }
+
+        assertEquals(8, histogram.getValueAtPercentile(25));
+        assertEquals(16, histogram.getValueAtPercentile(50));
+        assertEquals(32, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void latenciesAreWithinABucket()
+    {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            // Spread over every power of two up to the largest value
+            long latency = (long) Math.pow(2, random.nextDouble() * 36) - 1;
+
+            histogram.reset();
+            histogram.record(latency);
+
+            long value = histogram.getValueAtPercentile(50);
+
+            assertTrue(value >= latency);
+            assertTrue(value <= latency + latency * BUCKET_WIDTH);
+        }
+    }
+
+    @Test
+    public void percentilesMatchExactPercentiles()
+    {
+        Random random = new Random(42);
+        long[] latencies = new long[100000];
+
+        for (int i = 0; i < latencies.length; i++)
+        {
+            // Log-normal around a millisecond, like frame latencies
+            latencies[i] = (long) (1000000 * Math.exp(random.nextGaussian()));
+            histogram.record(latencies[i]);
+        }
+
+        Arrays.sort(latencies);
+
+        assertEquals(latencies.length, histogram.getCount());
+        assertEquals(latencies[latencies.length - 1], histogram.getMax());
+        assertEquals(latencies[latencies.length - 1], histogram.getValueAtPercentile(100));
+
+        double[] percentiles = {1, 10, 50, 90, 99, 99.9};
+
+        for (double percentile : percentiles)
+        {
+            long exact = latencies[(int) Math.ceil(percentile / 100 * latencies.length) - 1];
+            long value = histogram.getValueAtPercentile(percentile);
+
+            assertTrue(value >= exact);
+            assertTrue(value <= exact + exact * BUCKET_WIDTH);
+        }
+    }
+
+    @Test
+    public void percentileNeverExceedsMax()
+    {
+        // The top of the bucket 1000 falls in is above 1000
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void outOfRangeLatenciesAreClamped()
+    {
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(MAX_VALUE, histogram.getMax());
+        assertEquals(MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetForgetsEverything()
+    {
+        histogram.record(1000);
+        histogram.record(2000000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        histogram.record(5);
+
+        assertEquals(5, histogram.getValueAtPercentile(99));
+    }
+}